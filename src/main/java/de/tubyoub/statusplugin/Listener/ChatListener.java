@@ -3,10 +3,8 @@ package de.tubyoub.statusplugin.Listener;
 import de.tubyoub.statusplugin.Managers.ConfigManager;
 import de.tubyoub.statusplugin.Managers.StatusManager;
 import de.tubyoub.statusplugin.StatusPlugin;
-import de.tubyoub.utils.ColourUtils;
-import me.clip.placeholderapi.PlaceholderAPI;
+import de.tubyoub.statusplugin.render.ViewerChatRenderer;
 import org.bukkit.Bukkit;
-import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -44,24 +42,16 @@ public class ChatListener implements Listener {
             Player player = event.getPlayer();
             String message = event.getMessage();
 
-            // Translate the player's status and add placeholders
-            String status = statusManager.translateColorsAndFormatting(statusManager.getStatus(player),player);
-            if (plugin.isPlaceholderAPIPresent()) {
-                status = PlaceholderAPI.setPlaceholders(player, status);
-            }
-
-           // message = plugin.getStatusManager().translateColorsAndFormatting(message,player);
+            // Format the message after the status
+            String formattedMessage = player.getName() + ": " + statusManager.translateColorsAndFormatting(message,player);
 
-            // Format the broadcast message
-            String broadcastMessage;
-            if (status.isEmpty()) {
-                broadcastMessage = player.getName() + ": " + statusManager.translateColorsAndFormatting(message,player);
+            // Send the message and cancel the original event, statuses with relational placeholders differ per reader
+            ViewerChatRenderer viewerChat = statusManager.getStatusRenderer().getViewerChat();
+            if (viewerChat.isViewerDependent(player)) {
+                viewerChat.send(player, formattedMessage);
             } else {
-                broadcastMessage = configManager.getOpeningCharacter() + ColourUtils.format(status) + ChatColor.RESET + configManager.getClosingCharacter() + " " + player.getName() + ": " + statusManager.translateColorsAndFormatting(message,player);
+                Bukkit.broadcastMessage(statusManager.getStatusRenderer().getChatPrefix(player) + formattedMessage);
             }
-
-            // Broadcast the message and cancel the original event
-            Bukkit.broadcastMessage(broadcastMessage);
             event.setCancelled(true);
         }
     }
@@ -40,11 +40,8 @@ public class PlayerJoinListener implements Listener {
      */
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
-        if (plugin.getConfigManager().isTablistFormatter()) {
-            Player player = event.getPlayer();
-            statusManager.updateDisplayName(player);
-        }
         Player player = event.getPlayer();
+        statusManager.handleJoin(player);
         // Check if the player has admin privileges
         if (player.hasPermission("StatusPlugin.admin") && plugin.getConfigManager().isCheckUpdate()) {
             // Alert if a critical update is available
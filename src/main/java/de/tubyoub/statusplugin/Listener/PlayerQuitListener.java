@@ -0,0 +1,34 @@
+package de.tubyoub.statusplugin.Listener;
+
+import de.tubyoub.statusplugin.Managers.StatusManager;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Class implementing the Listener interface to handle player quit events.
+ * When a player leaves, everything kept in memory only for rendering their status is dropped.
+ */
+public class PlayerQuitListener implements Listener {
+    private final StatusManager statusManager;
+
+    /**
+     * Constructor for the PlayerQuitListener class.
+     *
+     * @param statusManager The StatusManager instance used to manage player statuses.
+     */
+    public PlayerQuitListener(StatusManager statusManager) {
+        this.statusManager = statusManager;
+    }
+
+    /**
+     * Event handler for player quit events.
+     *
+     * @param event The PlayerQuitEvent to be handled.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        statusManager.handleQuit(event.getPlayer().getUniqueId());
+    }
+}
@@ -0,0 +1,49 @@
+package de.tubyoub.statusplugin.Listener;
+
+import de.tubyoub.statusplugin.Managers.StatusManager;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Class implementing the Listener interface to load and release statuses when lazy loading is enabled.
+ * The status is fetched during the asynchronous pre-login, so it is in memory before the player joins
+ * and the main thread never waits for the store.
+ */
+public class StatusLoadListener implements Listener {
+    private final StatusManager statusManager;
+
+    /**
+     * Constructor for the StatusLoadListener class.
+     *
+     * @param statusManager The StatusManager instance used to manage player statuses.
+     */
+    public StatusLoadListener(StatusManager statusManager) {
+        this.statusManager = statusManager;
+    }
+
+    /**
+     * Loads the status of a player that is about to join.
+     * Runs at MONITOR priority so logins denied by other plugins don't load anything.
+     *
+     * @param event The AsyncPlayerPreLoginEvent to be handled.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            statusManager.loadPlayerStatus(event.getUniqueId());
+        }
+    }
+
+    /**
+     * Marks the status of a player that left so it can be released later.
+     *
+     * @param event The PlayerQuitEvent to be handled.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        statusManager.markPlayerOffline(event.getPlayer().getUniqueId());
+    }
+}
@@ -13,9 +13,11 @@ import dev.dejvokep.boostedyaml.settings.updater.UpdaterSettings;
 import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import org.slf4j.event.Level;
 
 public class ConfigManager {
@@ -23,11 +25,41 @@ public class ConfigManager {
     private int maxStatusLength;
     private boolean checkUpdate;
     private boolean chatFormatter;
+    private boolean chatPerViewer;
+    private String chatViewerClass;
     private boolean tablistFormatter;
     private boolean groupMode;
     private String openingCharacter;
     private String closingCharacter;
     private Map<String, GroupConfig> statusGroups;
+    private String storageType;
+    private int saveInterval;
+    private int saveAfterChanges;
+    private int shutdownSaveTimeout;
+    private int journalCompactThreshold;
+    private int shardCount;
+    private boolean lazyLoading;
+    private int unloadDelay;
+    private int cacheSize;
+    private int historySize;
+    private boolean syncEnabled;
+    private String syncTransport;
+    private String syncServerId;
+    private String syncHost;
+    private int syncPort;
+    private List<String> syncPeers;
+    private String syncSecret;
+    private int transferRecordsPerTick;
+    // Read by the render threads, so these are only ever replaced with complete, immutable values
+    private volatile int placeholderCacheSeconds;
+    private int tablistSweepInterval;
+    private int tablistTickBudget;
+    private int tablistRenderThreads;
+    private String tablistMode;
+    private int tablistMaxTeams;
+    private volatile Set<String> threadSafePlaceholders = Set.of();
+    private volatile Map<String, Integer> placeholderCacheIdentifiers = Map.of();
+    private int generation;
     private final StatusPlugin plugin;
 
     public ConfigManager(StatusPlugin plugin) {
@@ -53,10 +85,42 @@ public class ConfigManager {
             maxStatusLength = config.getInt("maxStatusLength", 15);
             checkUpdate = config.getBoolean("checkUpdate", true);
             chatFormatter = config.getBoolean("chatFormatter", true);
+            chatPerViewer = config.getBoolean("chatPerViewer", true);
+            chatViewerClass = config.getString("chatViewerClass", "");
             tablistFormatter = config.getBoolean("changeTablistNames", true);
             groupMode = config.getBoolean("groupMode", false);
             openingCharacter = config.getString("openingCharacter", "[");
             closingCharacter = config.getString("closingCharacter", "]");
+            storageType = config.getString("storage.type", "yaml");
+            saveInterval = config.getInt("storage.saveInterval", 30);
+            saveAfterChanges = config.getInt("storage.saveAfterChanges", 50);
+            shutdownSaveTimeout = config.getInt("storage.shutdownSaveTimeout", 10);
+            journalCompactThreshold = config.getInt("storage.journalCompactThreshold", 10000);
+            shardCount = config.getInt("storage.shards", 16);
+            lazyLoading = config.getBoolean("storage.lazyLoading", false);
+            unloadDelay = config.getInt("storage.unloadDelay", 300);
+            cacheSize = config.getInt("storage.cacheSize", 10000);
+            historySize = config.getInt("history.size", 10);
+            syncEnabled = config.getBoolean("sync.enabled", false);
+            syncTransport = config.getString("sync.transport", "socket");
+            syncServerId = config.getString("sync.serverId", "");
+            syncHost = config.getString("sync.host", "127.0.0.1");
+            syncPort = config.getInt("sync.port", 25590);
+            syncPeers = config.getStringList("sync.peers");
+            syncSecret = config.getString("sync.secret", "");
+            transferRecordsPerTick = config.getInt("transfer.recordsPerTick", 1000);
+            placeholderCacheSeconds = config.getInt("placeholders.cacheSeconds", 5);
+            tablistSweepInterval = config.getInt("tablist.sweepInterval", 300);
+            tablistTickBudget = config.getInt("tablist.tickBudget", 2000);
+            tablistRenderThreads = config.getInt("tablist.renderThreads", 2);
+            tablistMode = config.getString("tablist.mode", "names");
+            tablistMaxTeams = config.getInt("tablist.maxTeams", 100);
+            loadPlaceholderCacheIdentifiers();
+            Set<String> threadSafe = new HashSet<>();
+            for (String identifier : config.getStringList("placeholders.threadSafe")) {
+                threadSafe.add(identifier.toLowerCase());
+            }
+            threadSafePlaceholders = Set.copyOf(threadSafe);
 
             int logLevel = config.getInt("loggerLevel", 20);
             Level level = Level.INFO;
@@ -69,6 +133,8 @@ public class ConfigManager {
             plugin.getFilteredLogger().setLevel(level);
 
             loadStatusGroups();
+            // Renders made with the previous config are outdated now
+            generation++;
 
             plugin.getFilteredLogger().debug("Config loaded successfully.");
         } catch (IOException e) {
@@ -92,6 +158,19 @@ public class ConfigManager {
         }
     }
 
+    private void loadPlaceholderCacheIdentifiers() {
+        Map<String, Integer> identifiers = new HashMap<>();
+        if (config.isSection("placeholders.identifiers")) {
+            for (Object key : config.getSection("placeholders.identifiers").getKeys()) {
+                String identifier = key.toString().toLowerCase();
+                identifiers.put(identifier, config.getInt("placeholders.identifiers." + key, placeholderCacheSeconds));
+                plugin.getFilteredLogger().debug("Caching placeholders of '{}' for {} seconds",
+                        identifier, identifiers.get(identifier));
+            }
+        }
+        placeholderCacheIdentifiers = Map.copyOf(identifiers);
+    }
+
     public void saveConfig() {
         try {
             config.save();
@@ -125,6 +204,24 @@ public class ConfigManager {
         }
     }
 
+    /**
+     * Returns whether chat messages of players whose status has relational placeholders are rendered for every reader.
+     *
+     * @return false if every message is broadcast the same to everyone.
+     */
+    public boolean isChatPerViewer() {
+        return chatPerViewer;
+    }
+
+    /**
+     * Returns the PlaceholderAPI placeholder that sorts chat readers into classes seeing the same status.
+     *
+     * @return The placeholder, empty if every reader is a class of their own.
+     */
+    public String getChatViewerClass() {
+        return chatViewerClass;
+    }
+
     public int getMaxStatusLength() {
         return maxStatusLength;
     }
@@ -172,6 +269,153 @@ public class ConfigManager {
         return statusGroups;
     }
 
+    public String getStorageType() {
+        return storageType;
+    }
+
+    public int getSaveInterval() {
+        return saveInterval;
+    }
+
+    public int getSaveAfterChanges() {
+        return saveAfterChanges;
+    }
+
+    public int getShutdownSaveTimeout() {
+        return shutdownSaveTimeout;
+    }
+
+    public int getJournalCompactThreshold() {
+        return journalCompactThreshold;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public boolean isLazyLoading() {
+        return lazyLoading;
+    }
+
+    public int getUnloadDelay() {
+        return unloadDelay;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    public boolean isSyncEnabled() {
+        return syncEnabled;
+    }
+
+    public String getSyncTransport() {
+        return syncTransport;
+    }
+
+    public String getSyncServerId() {
+        return syncServerId;
+    }
+
+    public String getSyncHost() {
+        return syncHost;
+    }
+
+    public int getSyncPort() {
+        return syncPort;
+    }
+
+    public List<String> getSyncPeers() {
+        return syncPeers;
+    }
+
+    public String getSyncSecret() {
+        return syncSecret;
+    }
+
+    /**
+     * Returns a number that changes every time the config is loaded.
+     *
+     * @return The config generation.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    public int getTransferRecordsPerTick() {
+        return transferRecordsPerTick;
+    }
+
+    /**
+     * Returns how often all display names are rendered again, in case a change was missed.
+     *
+     * @return The interval in seconds, 0 if there is no sweep.
+     */
+    public int getTablistSweepInterval() {
+        return tablistSweepInterval;
+    }
+
+    /**
+     * Returns how long rendering names may take per tick.
+     *
+     * @return The budget in microseconds.
+     */
+    public int getTablistTickBudget() {
+        return tablistTickBudget;
+    }
+
+    /**
+     * Returns how statuses are shown in the tablist.
+     *
+     * @return names or teams.
+     */
+    public String getTablistMode() {
+        return tablistMode;
+    }
+
+    /**
+     * Returns the most scoreboard teams created with tablist mode teams.
+     *
+     * @return The team limit.
+     */
+    public int getTablistMaxTeams() {
+        return tablistMaxTeams;
+    }
+
+    /**
+     * Returns how many worker threads render display names.
+     *
+     * @return The number of threads, 0 to render on the main thread.
+     */
+    public int getTablistRenderThreads() {
+        return tablistRenderThreads;
+    }
+
+    /**
+     * Returns whether the placeholders of a PlaceholderAPI expansion may be resolved off the main thread.
+     *
+     * @param identifier The lower case identifier of the expansion.
+     * @return true if the expansion is listed under placeholders.threadSafe.
+     */
+    public boolean isPlaceholderThreadSafe(String identifier) {
+        return threadSafePlaceholders.contains(identifier);
+    }
+
+    /**
+     * Returns how long the values of a PlaceholderAPI expansion are cached.
+     *
+     * @param identifier The lower case identifier of the expansion.
+     * @return The cache time in milliseconds, 0 if values are not cached.
+     */
+    public long getPlaceholderCacheMillis(String identifier) {
+        Integer seconds = placeholderCacheIdentifiers.get(identifier);
+        return Math.max(0, seconds != null ? seconds : placeholderCacheSeconds) * 1000L;
+    }
+
     public void reloadConfig() {
         loadConfig();
         plugin.getFilteredLogger().info("Config reloaded.");
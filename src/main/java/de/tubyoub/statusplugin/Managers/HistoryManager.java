@@ -0,0 +1,183 @@
+package de.tubyoub.statusplugin.Managers;
+
+import de.tubyoub.statusplugin.StatusPlugin;
+import de.tubyoub.statusplugin.model.HistoryEntry;
+import de.tubyoub.statusplugin.model.StatusHistory;
+import de.tubyoub.statusplugin.storage.StatusHistoryLog;
+import de.tubyoub.statusplugin.storage.StatusWriter;
+
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Class responsible for the status history of players.
+ * New entries are appended to history.log by the background writer together with the statuses,
+ * so recording an entry never touches the disk on the main thread. Histories are read from the file
+ * when they are asked for and only the last few asked for are kept in memory.
+ */
+public class HistoryManager implements Flushable {
+    private static final int MAX_CACHED_HISTORIES = 256;
+
+    private final StatusPlugin plugin;
+    private final StatusWriter statusWriter;
+    private final int historySize;
+    // Guarded by unwritten, so a history is never cached between an entry being recorded and being queued
+    private final Map<UUID, StatusHistory> histories = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, StatusHistory> eldest) {
+            return size() > MAX_CACHED_HISTORIES;
+        }
+    };
+    private final Queue<HistoryEntry> unwritten = new ConcurrentLinkedQueue<>();
+    // Entries of a failed append, only touched by the writer thread
+    private final List<HistoryEntry> retry = new ArrayList<>();
+    private final StatusHistoryLog log;
+
+    /**
+     * Constructor for the HistoryManager class.
+     * Indexes history.log on the writer thread and registers the history to be saved by the given writer.
+     *
+     * @param plugin       The StatusPlugin instance.
+     * @param statusWriter The writer that saves the history together with the statuses.
+     */
+    public HistoryManager(StatusPlugin plugin, StatusWriter statusWriter) {
+        this.plugin = plugin;
+        this.statusWriter = statusWriter;
+        this.historySize = Math.max(0, plugin.getConfigManager().getHistorySize());
+        this.log = new StatusHistoryLog(new File(plugin.getDataFolder(), "history.log"), Math.max(1, historySize));
+        if (isEnabled()) {
+            load();
+            statusWriter.addCompanion(this);
+        }
+    }
+
+    /**
+     * Returns whether a history is kept at all.
+     *
+     * @return false if history.size is 0.
+     */
+    public boolean isEnabled() {
+        return historySize > 0;
+    }
+
+    /**
+     * Records a status change in the history of a player.
+     *
+     * @param uuid   The player's UUID.
+     * @param setter The name of whoever changed the status.
+     * @param status The new status, or null if the status was removed.
+     */
+    public void record(UUID uuid, String setter, String status) {
+        if (!isEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (unwritten) {
+            // A history that is not cached is read from the file with this entry once it is asked for
+            StatusHistory history = histories.get(uuid);
+            if (history != null) {
+                history.add(now, setter, status);
+            }
+            unwritten.offer(new HistoryEntry(uuid, now, setter, status));
+        }
+    }
+
+    /**
+     * Returns the history of a player, newest first.
+     * A history that is not in memory is read from history.log on the writer thread.
+     *
+     * @param uuid The player's UUID.
+     * @return A future completed with the entries, empty if the player has no history.
+     */
+    public CompletableFuture<List<HistoryEntry>> getHistory(UUID uuid) {
+        synchronized (unwritten) {
+            StatusHistory history = histories.get(uuid);
+            if (history != null) {
+                return CompletableFuture.completedFuture(history.getEntries());
+            }
+        }
+        return statusWriter.submit(store -> loadHistory(uuid).getEntries());
+    }
+
+    /**
+     * Appends the recorded entries to history.log.
+     * Called on the writer thread, rewrites the file once most of its entries are outdated.
+     *
+     * @throws IOException If the entries could not be written.
+     */
+    @Override
+    public void flush() throws IOException {
+        HistoryEntry entry;
+        while ((entry = unwritten.poll()) != null) {
+            retry.add(entry);
+        }
+        log.append(retry);
+        retry.clear();
+
+        if (log.getRecordCount() > Math.max(1000, log.getKeptCount() * 2)) {
+            long before = log.getRecordCount();
+            long kept = log.compact();
+            plugin.getFilteredLogger().debug("Compacted history.log from {} to {} entries.", before, kept);
+        }
+    }
+
+    /**
+     * Closes history.log, called after the writer stopped.
+     */
+    public void close() {
+        try {
+            log.close();
+        } catch (IOException e) {
+            plugin.getFilteredLogger().error("Could not close history.log: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the history of a player from the file and caches it. Runs on the writer thread,
+     * so no entries are moved from the queue to the file while reading.
+     */
+    private StatusHistory loadHistory(UUID uuid) throws IOException {
+        StatusHistory loaded = new StatusHistory(uuid, historySize);
+        log.read(uuid, entry -> loaded.add(entry.getTimestamp(), entry.getSetter(), entry.getStatus()));
+        for (HistoryEntry entry : retry) {
+            if (entry.getUuid().equals(uuid)) {
+                loaded.add(entry.getTimestamp(), entry.getSetter(), entry.getStatus());
+            }
+        }
+        synchronized (unwritten) {
+            StatusHistory cached = histories.get(uuid);
+            if (cached != null) {
+                return cached;
+            }
+            for (HistoryEntry entry : unwritten) {
+                if (entry.getUuid().equals(uuid)) {
+                    loaded.add(entry.getTimestamp(), entry.getSetter(), entry.getStatus());
+                }
+            }
+            histories.put(uuid, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Indexes history.log on the writer thread, before any entry is appended or read.
+     */
+    private void load() {
+        statusWriter.submit(store -> log.load()).whenComplete((count, error) -> {
+            if (error != null) {
+                plugin.getFilteredLogger().error("Could not load history.log: {}", error.getMessage());
+            } else {
+                plugin.getFilteredLogger().debug("Indexed {} history entries.", count);
+            }
+        });
+    }
+}
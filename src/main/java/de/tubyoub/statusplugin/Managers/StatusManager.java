@@ -2,8 +2,26 @@ package de.tubyoub.statusplugin.Managers;
 
 import de.tubyoub.statusplugin.StatusPlugin;
 import de.tubyoub.statusplugin.model.GroupConfig;
+import de.tubyoub.statusplugin.model.StatusChange;
+import de.tubyoub.statusplugin.model.StatusText;
+import de.tubyoub.statusplugin.render.DisplayNameUpdater;
+import de.tubyoub.statusplugin.render.PermissionCache;
+import de.tubyoub.statusplugin.render.RenderSnapshot;
+import de.tubyoub.statusplugin.render.StatusRenderer;
+import de.tubyoub.statusplugin.render.StatusTeams;
+import de.tubyoub.statusplugin.storage.BinarySnapshotCodec;
+import de.tubyoub.statusplugin.storage.FileStatusStore;
+import de.tubyoub.statusplugin.storage.ShardedStatusStore;
+import de.tubyoub.statusplugin.storage.SnapshotCodec;
+import de.tubyoub.statusplugin.storage.SqliteStatusStore;
+import de.tubyoub.statusplugin.storage.StatusCache;
+import de.tubyoub.statusplugin.storage.StatusStore;
+import de.tubyoub.statusplugin.storage.StatusWriter;
+import de.tubyoub.statusplugin.storage.YamlSnapshotCodec;
+import de.tubyoub.statusplugin.sync.SyncManager;
+import de.tubyoub.statusplugin.transfer.StatusTransfer;
 import de.tubyoub.utils.ColourUtils;
-import me.clip.placeholderapi.PlaceholderAPI;
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.YamlConfiguration;
@@ -11,25 +29,39 @@ import org.bukkit.entity.Player;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Class responsible for managing player statuses.
  */
 public class StatusManager {
-    private final File statusFile;
-    private final Map<UUID, String> statusMap = new HashMap<>();
+    private final StatusCache statusCache;
+    private final StatusWriter statusWriter;
+    private final HistoryManager historyManager;
+    private final SyncManager syncManager;
+    private final StatusTransfer statusTransfer;
+    private final StatusRenderer statusRenderer;
+    private final PermissionCache permissionCache;
+    private final DisplayNameUpdater displayNameUpdater;
+    // Null unless tablist.mode is teams
+    private final StatusTeams statusTeams;
+    private final boolean lazyLoading;
+    // Players whose status changed while a reload reads the store, their changes win over what was read. Main thread only
+    private Set<UUID> changedDuringReload;
+    private CompletableFuture<Void> runningReload;
 
     private static final int DEFAULT_MAX_LENGTH = 15;
+    // Tags, codes and placeholders have no visible length, this bounds what a status may carry in total
+    private static final int MAX_RAW_LENGTH = 1024;
     private int maxStatusLength = DEFAULT_MAX_LENGTH;
     private final StatusPlugin plugin;
-    private ColourUtils chatColour;
-    private final boolean placeholderAPIPresent;
     private ConfigManager configManager;
 
     /**
@@ -39,11 +71,118 @@ public class StatusManager {
      */
     public StatusManager(StatusPlugin plugin) {
         this.plugin = plugin;
-        this.placeholderAPIPresent = plugin.isPlaceholderAPIPresent();
         this.configManager = plugin.getConfigManager();
+        this.permissionCache = new PermissionCache(plugin, this);
+        this.statusRenderer = new StatusRenderer(plugin, this);
+        this.displayNameUpdater = new DisplayNameUpdater(plugin, this);
+        this.statusTeams = "teams".equalsIgnoreCase(configManager.getTablistMode()) ? new StatusTeams(plugin) : null;
         maxStatusLength = configManager.getMaxStatusLength();
-        this.statusFile = new File(plugin.getDataFolder(), "statuses.yml");
+        this.statusWriter = new StatusWriter(plugin, createStore());
+        this.historyManager = new HistoryManager(plugin, statusWriter);
+        this.lazyLoading = configManager.isLazyLoading() && statusWriter.getStore().supportsLookups();
+        if (configManager.isLazyLoading() && !lazyLoading) {
+            plugin.getFilteredLogger().warn("Lazy loading needs storage type sqlite or sharded, all statuses will be loaded on startup.");
+        }
+        // Without lazy loading every status has to stay in memory, evicted ones could not be loaded again
+        this.statusCache = new StatusCache(lazyLoading ? configManager.getCacheSize() : 0);
         loadStatuses();
+        this.syncManager = SyncManager.create(plugin, this);
+        this.statusTransfer = new StatusTransfer(plugin, this);
+    }
+
+    /**
+     * Creates the store configured under storage.type.
+     * Falls back to the flat file store if the configured store cannot be opened.
+     *
+     * @return The StatusStore to use.
+     */
+    private StatusStore createStore() {
+        File dataFolder = plugin.getDataFolder();
+        File journalFile = new File(dataFolder, "statuses.journal");
+        YamlSnapshotCodec yamlCodec = new YamlSnapshotCodec();
+        FileStatusStore yamlStore = new FileStatusStore(plugin, yamlCodec, journalFile);
+        String type = configManager.getStorageType().toLowerCase();
+
+        if ("binary".equals(type)) {
+            SnapshotCodec binaryCodec = new BinarySnapshotCodec();
+            File binaryFile = new File(dataFolder, binaryCodec.getFileName());
+            File yamlFile = new File(dataFolder, yamlCodec.getFileName());
+            if (!binaryFile.exists() && yamlFile.exists()) {
+                // One-time import, the journal stays valid since both snapshots hold the same statuses
+                try {
+                    Map<UUID, String> statuses = new HashMap<>();
+                    yamlCodec.read(yamlFile, statuses::put);
+                    binaryCodec.write(binaryFile, statuses);
+                    yamlFile.renameTo(new File(dataFolder, yamlCodec.getFileName() + ".imported"));
+                    plugin.getFilteredLogger().info("Converted {} statuses from statuses.yml into statuses.bin", statuses.size());
+                } catch (IOException e) {
+                    plugin.getFilteredLogger().error("Could not convert statuses.yml, using it instead of statuses.bin: {}", e.getMessage());
+                    return yamlStore;
+                }
+            }
+            return new FileStatusStore(plugin, binaryCodec, journalFile);
+        }
+
+        if ("sharded".equals(type)) {
+            try {
+                ShardedStatusStore shardedStore = new ShardedStatusStore(plugin,
+                        new File(dataFolder, "statuses"), configManager.getShardCount());
+                if (shardedStore.isEmpty()) {
+                    // First start with shards, take over the statuses saved so far
+                    List<StatusChange> statuses = new ArrayList<>();
+                    yamlStore.forEach((uuid, status) -> statuses.add(new StatusChange(uuid, status)));
+                    shardedStore.write(statuses);
+                    plugin.getFilteredLogger().info("Imported {} statuses from statuses.yml into shard files", statuses.size());
+                }
+                yamlStore.close();
+                return shardedStore;
+            } catch (IOException e) {
+                plugin.getFilteredLogger().error("Could not open sharded storage, using statuses.yml instead: {}", e.getMessage());
+            }
+        }
+
+        if ("sqlite".equals(type)) {
+            File databaseFile = new File(dataFolder, "statuses.db");
+            boolean newDatabase = !databaseFile.exists();
+            try {
+                StatusStore sqliteStore = new SqliteStatusStore(plugin, databaseFile);
+                if (newDatabase) {
+                    // First start with SQLite, take over the statuses saved so far
+                    List<StatusChange> statuses = new ArrayList<>();
+                    yamlStore.forEach((uuid, status) -> statuses.add(new StatusChange(uuid, status)));
+                    sqliteStore.write(statuses);
+                    plugin.getFilteredLogger().info("Imported {} statuses from statuses.yml into statuses.db", statuses.size());
+                }
+                yamlStore.close();
+                return sqliteStore;
+            } catch (IOException e) {
+                plugin.getFilteredLogger().error("Could not open SQLite storage, using statuses.yml instead: {}", e.getMessage());
+            }
+        }
+        return yamlStore;
+    }
+
+    /**
+     * Writes all stored statuses to statuses-export.yml in the background.
+     *
+     * @param sender The sender that gets told the result.
+     */
+    public void exportYaml(CommandSender sender) {
+        File exportFile = new File(plugin.getDataFolder(), "statuses-export.yml");
+        statusWriter.submit(store -> {
+            Map<UUID, String> statuses = new HashMap<>();
+            store.forEach(statuses::put);
+            new YamlSnapshotCodec().write(exportFile, statuses);
+            return statuses.size();
+        }).whenComplete((count, error) -> Bukkit.getScheduler().runTask(plugin, () -> {
+            if (error != null) {
+                sender.sendMessage(plugin.getPluginPrefix() + ChatColor.RED + " Export failed: " + error.getMessage());
+                plugin.getFilteredLogger().error("Could not export statuses: {}", error.getMessage());
+            } else {
+                sender.sendMessage(plugin.getPluginPrefix() + ChatColor.GREEN + " Exported " + count + " statuses to " + exportFile.getName());
+                plugin.getFilteredLogger().info("{} exported {} statuses to {}", sender.getName(), count, exportFile.getName());
+            }
+        }));
     }
 
     /**
@@ -61,26 +200,45 @@ public class StatusManager {
             return false;
         }
 
-        if (status.contains("&_")) {
-            status = status.replace("&_", " ");
-        }
-        String translatedStatus = translateColorsAndFormatting(status, sender);
-        if (calculateEffectiveLength(translatedStatus) > maxStatusLength) {
+        String validStatus = validateStatus(status);
+        if (validStatus == null) {
             sender.sendMessage(ChatColor.RED + "Status is too long. Max length is " + maxStatusLength + " characters.");
-            plugin.getFilteredLogger().debug("Status '{}' for player {} is too long. Effective length: {}, Max length: {}",
-                    status, player.getName(), calculateEffectiveLength(translatedStatus), maxStatusLength);
+            plugin.getFilteredLogger().debug("Status '{}' for player {} is too long. Max length: {}",
+                    status, player.getName(), maxStatusLength);
             return false;
         }
-
-        statusMap.put(player.getUniqueId(), status);
-        if (configManager.isTablistFormatter()) {
-            updateDisplayName(player);
+        status = validStatus;
+
+        statusCache.put(player.getUniqueId(), status);
+        markDirty(player.getUniqueId());
+        recordChange(player.getUniqueId(), status);
+        historyManager.record(player.getUniqueId(), sender.getName(), status);
+        if (syncManager != null) {
+            syncManager.publish(player.getUniqueId(), sender.getName(), status);
         }
-        saveStatuses();
         plugin.getFilteredLogger().debug("Status for player {} set to '{}' by {}", player.getName(), status, sender.getName());
         return true;
     }
 
+    /**
+     * Checks a status against the rules of {@link #setStatus(Player, String, CommandSender)}.
+     * Replaces &_ with spaces and checks the length of the visible text.
+     * Codes are never visible, whether the player may use them or not, so permissions don't change the length.
+     * The whole status including codes, tags and placeholders may not be longer than 1024 characters.
+     *
+     * @param status The status to check.
+     * @return The status to store, or null if it is too long.
+     */
+    public String validateStatus(String status) {
+        if (status.contains("&_")) {
+            status = status.replace("&_", " ");
+        }
+        if (status.length() > MAX_RAW_LENGTH || calculateEffectiveLength(status) > maxStatusLength) {
+            return null;
+        }
+        return status;
+    }
+
     /**
      * Method to set a player's status to a predefined group status.
      *
@@ -157,11 +315,14 @@ public class StatusManager {
         }
 
         String status = groupConfig.getStatus();
-        statusMap.put(player.getUniqueId(), status);
-        if (configManager.isTablistFormatter()) {
-            updateDisplayName(player);
+        statusCache.put(player.getUniqueId(), status);
+        markDirty(player.getUniqueId());
+        String setter = admin != null ? admin.getName() : player.getName();
+        recordChange(player.getUniqueId(), status);
+        historyManager.record(player.getUniqueId(), setter, status);
+        if (syncManager != null) {
+            syncManager.publish(player.getUniqueId(), setter, status);
         }
-        saveStatuses();
 
         if (admin != null) {
             plugin.getFilteredLogger().debug("Admin {} set player {} status to group '{}' ({})",
@@ -192,51 +353,106 @@ public class StatusManager {
      * @return The status of the player.
      */
     public String getStatus(Player player) {
-        return statusMap.getOrDefault(player.getUniqueId(), "");
+        String status = statusCache.get(player.getUniqueId());
+        return status != null ? status : "";
+    }
+
+    /**
+     * Returns the parsed status of a player, parsed once and kept until the status changes.
+     *
+     * @param player The player whose status is to be retrieved.
+     * @return The parsed status, {@link StatusText#EMPTY} if the player has none.
+     */
+    public StatusText getStatusText(Player player) {
+        StatusText text = statusCache.getText(player.getUniqueId());
+        return text != null ? text : StatusText.EMPTY;
     }
 
     /**
      * Updates the display name of the player based on their status.
      * If the player has a status, it is translated and added to their display name.
      * If the player does not have a status, their display name is set to their name.
+     * The name comes from the {@link StatusRenderer}, which only renders it again when something changed.
+     * Changes should use {@link #markDirty(UUID)} instead, which updates the name on the next tick.
      *
      * @param player The player whose display name is to be updated.
      */
     public void updateDisplayName(Player player) {
-        String status = getStatus(player);
-
-        String translatedStatus = translateColorsAndFormatting(status, player);
-        if (plugin.isLuckPermsPresent() && player.hasPermission("StatusPlugin.placeholders")) {
-            String prefix = plugin.getLuckPerms().getPlayerAdapter(Player.class).getUser(player).getCachedData().getMetaData().getPrefix();
-            String suffix = plugin.getLuckPerms().getPlayerAdapter(Player.class).getUser(player).getCachedData().getMetaData().getSuffix();
+        RenderSnapshot snapshot = statusRenderer.snapshot(player);
+        applyNamePrefix(player, statusRenderer.getNamePrefix(snapshot), snapshot.getText());
+    }
 
-            if (prefix != null) {
-                translatedStatus = translatedStatus.replace("%LP_prefix%", prefix);
-            } else {
-                translatedStatus = translatedStatus.replace("%LP_prefix%", "");
-            }
-            if (suffix != null) {
-                translatedStatus = translatedStatus.replace("%LP_suffix%", suffix);
-            } else {
-                translatedStatus = translatedStatus.replace("%LP_suffix%", "");
-            }
-        }
-        if (placeholderAPIPresent && player.hasPermission("StatusPlugin.placeholders")) {
-            translatedStatus = PlaceholderAPI.setPlaceholders(player, translatedStatus);
+    /**
+     * Shows a rendered status in front of the name of a player. Must be called on the main thread.
+     * By default it becomes part of the display and tablist name, which are only set if they changed.
+     * With tablist mode teams the player is put into the team of the status instead and the display name is left alone,
+     * only if no team is left the status is put in front of the tablist name.
+     *
+     * @param player     The player.
+     * @param namePrefix The rendered status in front of the name, empty if the player has no status.
+     * @param text       The status the prefix was rendered from.
+     */
+    public void applyNamePrefix(Player player, String namePrefix, StatusText text) {
+        String displayName = StatusRenderer.toDisplayName(player.getName(), namePrefix);
+        if (statusTeams != null) {
+            boolean inTeam = statusTeams.assign(player, namePrefix);
+            displayNameUpdater.applyListName(player, inTeam ? player.getName() : displayName);
+        } else if (displayNameUpdater.apply(player, displayName, displayName)) {
+            plugin.getFilteredLogger().debug("Set display name of {} to {}", player.getName(), displayName.replace("§","&"));
         }
+        displayNameUpdater.rendered(player, text);
+    }
 
-        String displayName;
-        if (status.isEmpty()) {
-            displayName = player.getName(); // No status, just use their name
-    plugin.getFilteredLogger().debug("Player {} has no status, setting display name to {}", player.getName(), displayName.replace("§","&"));
-        } else {
-            displayName = configManager.getOpeningCharacter() + translatedStatus + ChatColor.RESET + configManager.getClosingCharacter() + " " + ChatColor.WHITE + player.getName();
-            displayName = ColourUtils.format(displayName);
-            plugin.getFilteredLogger().debug("Player {} has status '{}', setting display name to {}", player.getName(), status, displayName.replace("§","&"));
-        }
+    /**
+     * Removes the status from the name of a player.
+     *
+     * @param player The player.
+     */
+    private void resetDisplayName(Player player) {
+        applyNamePrefix(player, "", StatusText.EMPTY);
+    }
+
+    /**
+     * Marks the display name of a player as outdated, it is rendered again on the next tick.
+     * Can be called from any thread.
+     *
+     * @param uuid The player's UUID.
+     */
+    public void markDirty(UUID uuid) {
+        displayNameUpdater.markDirty(uuid);
+    }
+
+    /**
+     * Renders the display names of all online players again, after the config or the statuses were reloaded.
+     */
+    public void refreshAllStatuses() {
+        displayNameUpdater.markAllDirty();
+    }
+
+    /**
+     * Queues the display name of a player that joined, it is rendered before other waiting names.
+     *
+     * @param player The player that joined.
+     */
+    public void handleJoin(Player player) {
+        // Read again while rendering, so joining itself stays cheap during a join storm
+        permissionCache.invalidate(player.getUniqueId());
+        statusRenderer.getLuckPermsMeta().invalidate(player.getUniqueId());
+        displayNameUpdater.markJoined(player.getUniqueId());
+    }
 
-        player.setDisplayName(displayName);
-        player.setPlayerListName(displayName);
+    /**
+     * Forgets what was rendered for a player that left.
+     *
+     * @param uuid The player's UUID.
+     */
+    public void handleQuit(UUID uuid) {
+        displayNameUpdater.forget(uuid);
+        if (statusTeams != null) {
+            statusTeams.leave(uuid);
+        }
+        permissionCache.invalidate(uuid);
+        statusRenderer.invalidate(uuid);
     }
 
     /**
@@ -271,79 +487,230 @@ public class StatusManager {
     }
 
     /**
-     * Loads the statuses from the status file into the status map.
+     * Loads the statuses from the store into the status map.
      */
     private void loadStatuses() {
-        if (!statusFile.exists()) {
-            plugin.getFilteredLogger().debug("Status file not found, no statuses loaded.");
+        if (lazyLoading) {
+            // Only players that are already online, everyone else is loaded on login
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                loadPlayerStatus(player.getUniqueId());
+            }
+            plugin.getFilteredLogger().debug("Lazy loading enabled, loaded {} statuses of online players.", statusCache.size());
             return;
         }
-        YamlConfiguration yaml = YamlConfiguration.loadConfiguration(statusFile);
-        for (String key : yaml.getKeys(false)) {
-            statusMap.put(UUID.fromString(key), yaml.getString(key));
+        try {
+            long count = statusWriter.load(statusCache::put);
+            plugin.getFilteredLogger().debug("Loaded {} statuses from the {} store.", count, statusWriter.getStore().getName());
+        } catch (IOException e) {
+            plugin.getFilteredLogger().error("Could not load statuses: {}", e.getMessage());
         }
-        plugin.getFilteredLogger().debug("Loaded {} statuses from file.", statusMap.size());
     }
 
     /**
-     * Saves the statuses from the status map into the status file.
+     * Loads the status of a single player from the store when lazy loading is enabled
+     * and pins it in the cache while the player is online.
+     * Called off the main thread before the player joins.
+     *
+     * @param uuid The player's UUID.
      */
-    public void saveStatuses() {
-        YamlConfiguration yaml = new YamlConfiguration();
-        for (Map.Entry<UUID, String> entry : statusMap.entrySet()) {
-            yaml.set(entry.getKey().toString(), entry.getValue());
+    public void loadPlayerStatus(UUID uuid) {
+        if (!lazyLoading) {
+            return;
+        }
+        // Every change goes through the cache, so a cached entry is never older than the store
+        if (statusCache.contains(uuid) && statusCache.pin(uuid)) {
+            return;
         }
         try {
-            yaml.save(statusFile);
-            plugin.getFilteredLogger().debug("Statuses saved to file. {} statuses saved.", statusMap.size());
+            statusCache.putPinned(uuid, statusWriter.lookup(uuid));
         } catch (IOException e) {
-            plugin.getFilteredLogger().error("Could not save statuses: {}", e.getMessage());
+            plugin.getFilteredLogger().error("Could not load status of {}: {}", uuid, e.getMessage());
+        }
+    }
+
+    /**
+     * Unpins the status of a player that left, so it can be evicted from the cache.
+     *
+     * @param uuid The player's UUID.
+     */
+    public void markPlayerOffline(UUID uuid) {
+        if (lazyLoading) {
+            statusCache.unpin(uuid);
+        }
+    }
+
+    /**
+     * Drops the cached statuses of players that have been offline longer than storage.unloadDelay.
+     * The statuses stay in the store and are loaded again on the next login.
+     */
+    public void releaseOfflineStatuses() {
+        // Loaded for a login that never completed
+        statusCache.unpinIf(uuid -> Bukkit.getPlayer(uuid) == null, 60_000L);
+        int released = statusCache.evictIdle(configManager.getUnloadDelay() * 1000L);
+        if (released > 0) {
+            plugin.getFilteredLogger().debug("Released {} statuses of offline players.", released);
+        }
+    }
+
+    /**
+     * Returns whether statuses are loaded per player instead of all at once.
+     *
+     * @return true if lazy loading is active.
+     */
+    public boolean isLazyLoading() {
+        return lazyLoading;
+    }
+
+    /**
+     * Returns the number of statuses currently held in memory.
+     *
+     * @return The loaded status count.
+     */
+    public int getLoadedStatusCount() {
+        return statusCache.size();
+    }
+
+    /**
+     * Returns the cache holding the statuses in memory, used to show cache statistics.
+     *
+     * @return The StatusCache instance.
+     */
+    public StatusCache getStatusCache() {
+        return statusCache;
+    }
+
+    /**
+     * Saves the pending status changes to the store.
+     * The store is written by the background writer, this method only waits for it.
+     */
+    public void saveStatuses() {
+        statusWriter.flushAndWait(configManager.getShutdownSaveTimeout() * 1000L);
+    }
+
+    /**
+     * Stops the background writer and saves all pending changes.
+     * Called when the plugin is disabled.
+     */
+    public void shutdown() {
+        statusTransfer.cancel();
+        displayNameUpdater.close();
+        if (statusTeams != null) {
+            statusTeams.close();
+        }
+        statusRenderer.getLuckPermsMeta().close();
+        permissionCache.close();
+        if (syncManager != null) {
+            syncManager.close();
         }
+        statusWriter.shutdown(configManager.getShutdownSaveTimeout() * 1000L);
+        historyManager.close();
+    }
+
+    /**
+     * Returns the status history of all players.
+     *
+     * @return The HistoryManager instance.
+     */
+    public HistoryManager getHistoryManager() {
+        return historyManager;
+    }
+
+    /**
+     * Returns the cross-server sync, used to show sync statistics.
+     *
+     * @return The SyncManager instance, or null if sync is disabled.
+     */
+    public SyncManager getSyncManager() {
+        return syncManager;
+    }
+
+    /**
+     * Returns the renderer of display names and chat prefixes.
+     *
+     * @return The StatusRenderer instance.
+     */
+    public StatusRenderer getStatusRenderer() {
+        return statusRenderer;
+    }
+
+    /**
+     * Returns the updater of display and tablist names.
+     *
+     * @return The DisplayNameUpdater instance.
+     */
+    public DisplayNameUpdater getDisplayNameUpdater() {
+        return displayNameUpdater;
+    }
+
+    /**
+     * Returns the scoreboard teams that show statuses with tablist mode teams.
+     *
+     * @return The StatusTeams instance, or null if names are used.
+     */
+    public StatusTeams getStatusTeams() {
+        return statusTeams;
+    }
+
+    /**
+     * Returns the cached formatting permissions of online players.
+     *
+     * @return The PermissionCache instance.
+     */
+    public PermissionCache getPermissionCache() {
+        return permissionCache;
+    }
+
+    /**
+     * Returns the bulk import and export of statuses.
+     *
+     * @return The StatusTransfer instance.
+     */
+    public StatusTransfer getStatusTransfer() {
+        return statusTransfer;
+    }
+
+    /**
+     * Returns the background writer, used to show save statistics.
+     *
+     * @return The StatusWriter instance.
+     */
+    public StatusWriter getStatusWriter() {
+        return statusWriter;
     }
 
     /**
      * Translates color and formatting codes in a status.
+     * Codes the sender has no permission for are removed, everything happens in a single pass.
+     * Only legacy codes are translated, chat messages are not rendered through MiniMessage,
+     * so text like {@code <3} stays as typed and chat lines never push statuses out of the template cache.
      *
      * @param status The status to be translated.
      * @param sender The sender of the command (for permission checks).
      * @return The translated status.
      */
     public String translateColorsAndFormatting(String status, CommandSender sender) {
-        String processedStatus = status;
-        String[] codes = {"&l", "&k", "&n", "&m", "&o"};
-        String[] permissions = {
-                "StatusPlugin.formatting.bold",
-                "StatusPlugin.formatting.magic",
-                "StatusPlugin.formatting.underline",
-                "StatusPlugin.formatting.strikethrough",
-                "StatusPlugin.formatting.italic"
-        };
-
-        if (!(sender instanceof Player) || !sender.hasPermission("StatusPlugin.formatting.color")) {
-            processedStatus = removeColorCodes(processedStatus);
-            plugin.getFilteredLogger().debug("Removing color codes for sender {} (no color permission).", sender.getName());
-        }
-        for (int i = 0; i < codes.length; i++) {
-            if (processedStatus.contains(codes[i]) && (!(sender instanceof Player) || !sender.hasPermission(permissions[i]))) {
-                processedStatus = processedStatus.replace(codes[i], "");
-                plugin.getFilteredLogger().debug("Removing formatting code {} for sender {} (no permission).", codes[i], sender.getName());
-            }
+        if (status.indexOf('&') < 0) {
+            return status;
+        }
+        String translated = ColourUtils.translate(status, getFormattingPermissions(sender));
+        if (plugin.getFilteredLogger().isDebugEnabled()) {
+            plugin.getFilteredLogger().debug("Translated status/message '{}' to '{}' for sender {}", status, translated.replace("§","'Paragraph symbol' "), sender.getName());
         }
-        String translated = ChatColor.translateAlternateColorCodes('&', processedStatus);
-        plugin.getFilteredLogger().debug("Translated status/message '{}' to '{}' for sender {}", status, translated.replace("§","'Paragraph symbol' "), sender.getName());
         return translated;
     }
 
     /**
-     * Removes color codes from a status.
+     * Returns the formatting permissions of a sender as the bits used by {@link ColourUtils#translate(String, int)}.
+     * Only players can use colours, their permissions come from the {@link PermissionCache}.
      *
-     * @param status The status from which color codes are to be removed.
-     * @return The status without color codes.
+     * @param sender The sender whose permissions are checked.
+     * @return The permission bits.
      */
-    private String removeColorCodes(String status) {
-        Pattern pattern = Pattern.compile("&[0-9a-fk-or]");
-        Matcher matcher = pattern.matcher(status);
-        return matcher.replaceAll("");
+    public int getFormattingPermissions(CommandSender sender) {
+        if (!(sender instanceof Player)) {
+            return 0;
+        }
+        return permissionCache.get((Player) sender) & ColourUtils.ALLOW_ALL;
     }
 
     /**
@@ -352,11 +719,93 @@ public class StatusManager {
      * @param player The player whose status is to be removed.
      */
     public void removeStatus(Player player) {
-        statusMap.remove(player.getUniqueId());
-        player.setDisplayName(player.getName());
-        player.setPlayerListName(player.getName());
-        saveStatuses();
-        plugin.getFilteredLogger().debug("Status removed for player {}", player.getName());
+        removeStatus(player, player);
+    }
+
+    /**
+     * Removes the status of a player.
+     *
+     * @param player The player whose status is to be removed.
+     * @param sender The sender that removed the status, recorded in the history.
+     */
+    public void removeStatus(Player player, CommandSender sender) {
+        statusCache.put(player.getUniqueId(), null);
+        displayNameUpdater.forget(player.getUniqueId());
+        resetDisplayName(player);
+        recordChange(player.getUniqueId(), null);
+        historyManager.record(player.getUniqueId(), sender.getName(), null);
+        if (syncManager != null) {
+            syncManager.publish(player.getUniqueId(), sender.getName(), null);
+        }
+        plugin.getFilteredLogger().debug("Status removed for player {} by {}", player.getName(), sender.getName());
+    }
+
+    /**
+     * Applies a status change made on another server.
+     * Only the affected player is re-rendered, and only if they are online here.
+     *
+     * @param uuid   The player's UUID.
+     * @param status The new status, or null if the status was removed.
+     * @param setter Who changed the status and on which server, recorded in the history.
+     */
+    public void applySyncedStatus(UUID uuid, String status, String setter) {
+        applyStatus(uuid, status);
+        historyManager.record(uuid, setter, status);
+        plugin.getFilteredLogger().debug("Applied synced status '{}' of {} set by {}", status, uuid, setter);
+    }
+
+    /**
+     * Applies a status read by /tsp import, the status must already be validated.
+     * Imports are not recorded in the history, they would fill it with a record of every imported player.
+     *
+     * @param uuid   The player's UUID.
+     * @param status The new status, or null to remove the status.
+     * @param setter Who ran the import, sent to the other servers.
+     */
+    public void importStatus(UUID uuid, String status, String setter) {
+        applyStatus(uuid, status);
+        if (syncManager != null) {
+            syncManager.publish(uuid, setter, status);
+        }
+    }
+
+    /**
+     * Forgets every status in memory and resets the names of online players.
+     * Used by /tsp import replace after the store was cleared.
+     */
+    public void resetStatuses() {
+        statusCache.resetStatuses();
+        displayNameUpdater.clear();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            resetDisplayName(player);
+        }
+        plugin.getFilteredLogger().debug("Reset all statuses in memory.");
+    }
+
+    /**
+     * Writes a status change and shows it, without recording who made it.
+     *
+     * @param uuid   The player's UUID.
+     * @param status The new status, or null if the status was removed.
+     */
+    private void applyStatus(UUID uuid, String status) {
+        recordChange(uuid, status);
+        if (lazyLoading) {
+            // Players that are not cached read the change from the store when they log in
+            statusCache.replace(uuid, status);
+        } else {
+            statusCache.put(uuid, status);
+        }
+
+        Player player = Bukkit.getPlayer(uuid);
+        if (player != null) {
+            if (status == null) {
+                displayNameUpdater.forget(uuid);
+                resetDisplayName(player);
+            } else {
+                markDirty(uuid);
+            }
+        }
     }
 
     /**
@@ -367,10 +816,10 @@ public class StatusManager {
      * @return The effective length of the text string.
      */
     public int calculateEffectiveLength(String text) {
-        // Remove color codes (&x) and PlaceholderAPI placeholders (%...%)
-        String cleanedText = text.replaceAll("&[0-9a-fk-or]", "").replaceAll("%[^%]+%", "");
-        plugin.getFilteredLogger().debug("Calculated effective length of '{}' (cleaned: '{}') as {}", text.replace("§","'paragraph symbol"), cleanedText.replace("§","'paragraph symbol"), cleanedText.length());
-        return cleanedText.length();
+        // Color codes (&x) and PlaceholderAPI placeholders (%...%) are not counted
+        StatusText statusText = StatusText.parse(text);
+        plugin.getFilteredLogger().debug("Calculated effective length of '{}' as {}", text, statusText.getEffectiveLength());
+        return statusText.getEffectiveLength();
     }
 
     public boolean isGroupMode() {
@@ -382,18 +831,104 @@ public class StatusManager {
     }
 
     /**
-     * Reloads the statuses from the status file into the status map.
+     * Reloads the statuses from the store into the status map without blocking the main thread.
+     * Pending changes are written and the store is read on the writer thread, the statuses are swapped in
+     * on the main thread afterwards. Statuses changed in between keep their new value.
+     * With lazy loading only the statuses of online players are read again, the others are dropped from the cache.
+     *
+     * @return A future completed on the main thread once the statuses were reloaded.
+     */
+    public CompletableFuture<Void> reloadStatuses() {
+        if (runningReload != null) {
+            return runningReload;
+        }
+        List<UUID> online = new ArrayList<>();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            online.add(player.getUniqueId());
+        }
+        CompletableFuture<Void> reload = new CompletableFuture<>();
+        runningReload = reload;
+        changedDuringReload = new HashSet<>();
+        // Runs after the pending changes were written
+        statusWriter.submit(store -> {
+            Map<UUID, String> loaded = new HashMap<>();
+            if (lazyLoading) {
+                for (UUID uuid : online) {
+                    loaded.put(uuid, store.get(uuid));
+                }
+            } else {
+                store.loadAll(loaded::put);
+            }
+            return loaded;
+        }).whenComplete((loaded, error) -> Bukkit.getScheduler().runTask(plugin, () -> {
+            Set<UUID> changed = changedDuringReload;
+            changedDuringReload = null;
+            runningReload = null;
+            if (error != null) {
+                plugin.getFilteredLogger().error("Could not reload statuses: {}", error.getMessage());
+                reload.completeExceptionally(error);
+                return;
+            }
+            applyReload(loaded, changed);
+            reload.complete(null);
+        }));
+        return reload;
+    }
+
+    /**
+     * Swaps the statuses read by {@link #reloadStatuses()} into the cache. Runs on the main thread.
      */
-    public void reloadStatuses() {
-        statusMap.clear();
-        this.loadStatuses();
+    private void applyReload(Map<UUID, String> loaded, Set<UUID> changed) {
+        for (UUID uuid : changed) {
+            loaded.remove(uuid);
+        }
+        if (lazyLoading) {
+            // Pinned entries belong to online players and to logins that loaded their status during the reload
+            statusCache.evictIdle(0);
+            for (Map.Entry<UUID, String> entry : loaded.entrySet()) {
+                if (Bukkit.getPlayer(entry.getKey()) != null) {
+                    statusCache.putPinned(entry.getKey(), entry.getValue());
+                } else {
+                    statusCache.put(entry.getKey(), entry.getValue());
+                }
+            }
+        } else {
+            Map<UUID, String> kept = new HashMap<>();
+            for (UUID uuid : changed) {
+                kept.put(uuid, statusCache.get(uuid));
+            }
+            statusCache.clear();
+            loaded.putAll(kept);
+            for (Map.Entry<UUID, String> entry : loaded.entrySet()) {
+                statusCache.put(entry.getKey(), entry.getValue());
+            }
+        }
+        refreshAllStatuses();
         plugin.getFilteredLogger().info("Statuses reloaded.");
     }
 
+    /**
+     * Hands a status change to the background writer, noting it if a reload is reading the store.
+     *
+     * @param uuid   The player's UUID.
+     * @param status The new status, or null if the status was removed.
+     */
+    private void recordChange(UUID uuid, String status) {
+        statusWriter.record(uuid, status);
+        if (changedDuringReload != null) {
+            changedDuringReload.add(uuid);
+        }
+    }
+
     /**
      * Reloads the configuration from the configuration file.
      */
     public void reloadConfig() {
         configManager.reloadConfig();
+        // Values cached with the old cache times
+        statusRenderer.getPlaceholderCache().clear();
+        statusRenderer.getViewerChat().clear();
+        // Permissions may have been changed without a LuckPerms event
+        permissionCache.clear();
     }
 }
@@ -2,6 +2,8 @@ package de.tubyoub.statusplugin;
 
 import de.tubyoub.statusplugin.Listener.ChatListener;
 import de.tubyoub.statusplugin.Listener.PlayerJoinListener;
+import de.tubyoub.statusplugin.Listener.PlayerQuitListener;
+import de.tubyoub.statusplugin.Listener.StatusLoadListener;
 import de.tubyoub.statusplugin.Managers.ConfigManager;
 import de.tubyoub.statusplugin.Managers.StatusManager;
 import de.tubyoub.statusplugin.commands.StatusGeneralCommand;
@@ -16,7 +18,6 @@ import net.luckperms.api.LuckPerms;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
-import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.slf4j.event.Level;
 
@@ -93,9 +94,17 @@ public class StatusPlugin extends JavaPlugin {
                     "You have automatic checks for new updates disabled. Enable them in the config to stay up to date");
         }
 
-        // Register the PlayerJoinListener and ChatListener
+        // Register the PlayerJoinListener, PlayerQuitListener and ChatListener
         getServer().getPluginManager().registerEvents(new PlayerJoinListener(this, this.statusManager), this);
+        getServer().getPluginManager().registerEvents(new PlayerQuitListener(this.statusManager), this);
         getServer().getPluginManager().registerEvents(new ChatListener(this), this);
+        if (statusManager.isLazyLoading()) {
+            getServer().getPluginManager().registerEvents(new StatusLoadListener(statusManager), this);
+            Bukkit.getScheduler().runTaskTimer(this, statusManager::releaseOfflineStatuses, 1200L, 1200L); // every minute
+        }
+        if (statusManager.getSyncManager() != null) {
+            Bukkit.getScheduler().runTaskTimerAsynchronously(this, statusManager.getSyncManager()::pruneVersions, 12000L, 12000L); // every 10 minutes
+        }
 
         // Set the executor and tab completer for the "status" command (for setting
         // status)
@@ -127,20 +136,16 @@ public class StatusPlugin extends JavaPlugin {
         if (Bukkit.getPluginManager().getPlugin("LuckPerms") != null) {
             this.luckPerms = getServer().getServicesManager().load(LuckPerms.class);
             luckPermsPresent = true;
+            statusManager.getStatusRenderer().getLuckPermsMeta().subscribe(luckPerms);
+            statusManager.getPermissionCache().subscribe(luckPerms);
             filteredLogger.info("Tub's StatusPlugin will now hook into LuckPerms");
         } else {
             filteredLogger.warn("Could not find LuckPerms! Tub's StatusPlugin will run without it..");
         }
 
-        // Schedule a task to update the display name of online players every 30
-        // seconds
-        if (configManager.isTablistFormatter()) {
-            Bukkit.getScheduler().runTaskTimer(this, () -> {
-                for (Player player : Bukkit.getOnlinePlayers()) {
-                    statusManager.updateDisplayName(player);
-                }
-            }, 0L, 600L); // 600 ticks = 30 seconds
-        }
+        // Display names are rendered again when something changed, plus a rare sweep over everyone
+        statusManager.getDisplayNameUpdater().start();
+        statusManager.refreshAllStatuses();
         filteredLogger.info("Tub's StatusPlugin successfully loaded");
     }
 
@@ -214,10 +219,10 @@ public class StatusPlugin extends JavaPlugin {
 
     /**
      * This method is called when the plugin is disabled.
-     * It saves the statuses.
+     * It stops the background writer and saves the pending statuses.
      */
     @Override
     public void onDisable() {
-        statusManager.saveStatuses();
+        statusManager.shutdown();
     }
 }
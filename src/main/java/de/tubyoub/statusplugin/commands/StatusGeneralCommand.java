@@ -1,18 +1,28 @@
 package de.tubyoub.statusplugin.commands;
 
+import de.tubyoub.statusplugin.Managers.HistoryManager;
 import de.tubyoub.statusplugin.Managers.StatusManager;
 import de.tubyoub.statusplugin.StatusPlugin;
+import de.tubyoub.statusplugin.model.HistoryEntry;
+import de.tubyoub.statusplugin.model.StatusText;
+import de.tubyoub.statusplugin.storage.StatusCache;
+import de.tubyoub.statusplugin.storage.StatusWriter;
 import de.tubyoub.utils.ColourUtils;
 import net.md_5.bungee.api.chat.ClickEvent;
 import net.md_5.bungee.api.chat.TextComponent;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -20,6 +30,7 @@ import java.util.stream.Collectors;
  * commands like reload, info, help, etc.
  */
 public class StatusGeneralCommand implements CommandExecutor {
+    private static final DateTimeFormatter HISTORY_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
     String version;
     private final StatusManager statusManager;
     private final boolean newVersion;
@@ -76,6 +87,18 @@ public class StatusGeneralCommand implements CommandExecutor {
             case "info":
                 infoCommand(sender, plugin);
                 return true;
+            case "exportyaml":
+                exportYamlCommand(sender);
+                return true;
+            case "export":
+                exportCommand(sender, args);
+                return true;
+            case "import":
+                importCommand(sender, args);
+                return true;
+            case "history":
+                historyCommand(sender, args);
+                return true;
             case "remove":
                 if (sender instanceof Player) {
                     removeOtherPlayerStatus((Player) sender, args);
@@ -133,7 +156,7 @@ public class StatusGeneralCommand implements CommandExecutor {
             }
         } else {
             if (statusManager.setStatus(target, content, sender)) {
-                sender.sendMessage(plugin.getPluginPrefix() + " Set " + target.getName() + "'s status to: " + ColourUtils.format(content));
+                sender.sendMessage(plugin.getPluginPrefix() + " Set " + target.getName() + "'s status to: " + StatusText.parse(content).translate(ColourUtils.ALLOW_ALL));
                 plugin.getFilteredLogger().debug("Player {} set status for {} to: {}", sender.getName(), target.getName(), content);
             }
         }
@@ -155,7 +178,7 @@ public class StatusGeneralCommand implements CommandExecutor {
             String status = Arrays.stream(args, 2, args.length).collect(Collectors.joining(" "));
             if (statusManager.setStatus(target, status, sender)) {
                 sender.sendMessage(plugin.getPluginPrefix() + " Set " + target.getName() + "'s status to: "
-                        + ColourUtils.format(status));
+                        + StatusText.parse(status).translate(ColourUtils.ALLOW_ALL));
                 plugin.getFilteredLogger().debug("Console set status for {} to: {}", target.getName(), status);
             }
         } else {
@@ -188,7 +211,7 @@ public class StatusGeneralCommand implements CommandExecutor {
             plugin.getFilteredLogger().debug("Player not found for remove status: {}", args[1]);
             return;
         }
-        statusManager.removeStatus(target);
+        statusManager.removeStatus(target, sender);
         sender.sendMessage(plugin.getPluginPrefix() + ChatColor.GREEN + " Removed " + target.getName() + "'s status.");
         plugin.getFilteredLogger().debug("{} removed status for {}", sender.getName(), target.getName());
     }
@@ -203,15 +226,149 @@ public class StatusGeneralCommand implements CommandExecutor {
     private void reloadPlugin(CommandSender sender) {
         if (!(sender instanceof Player) || sender.hasPermission("StatusPlugin.admin.reload")) {
             statusManager.reloadConfig();
-            statusManager.reloadStatuses();
-            sender.sendMessage(plugin.getPluginPrefix() + ChatColor.GREEN + " Config & Statuses successfully reloaded");
-            plugin.getFilteredLogger().info("{} reloaded the plugin.", sender.getName());
+            // Statuses are read off the main thread, the future completes on it
+            statusManager.reloadStatuses().whenComplete((ignored, error) -> {
+                if (error != null) {
+                    sender.sendMessage(plugin.getPluginPrefix() + ChatColor.RED + " Config reloaded, but the statuses could not be reloaded: "
+                            + error.getMessage());
+                    return;
+                }
+                sender.sendMessage(plugin.getPluginPrefix() + ChatColor.GREEN + " Config & Statuses successfully reloaded");
+                plugin.getFilteredLogger().info("{} reloaded the plugin.", sender.getName());
+            });
         } else {
             sender.sendMessage(plugin.getPluginPrefix() + ChatColor.RED + " You don't have permission to reload statuses.");
             plugin.getFilteredLogger().debug("Player {} tried to reload without permission", sender.getName());
         }
     }
 
+    /**
+     * Exports all statuses to a YAML file, whatever storage is configured.
+     *
+     * @param sender The sender of the command.
+     */
+    private void exportYamlCommand(CommandSender sender) {
+        if (!(sender instanceof Player) || sender.hasPermission("StatusPlugin.admin.export")) {
+            sender.sendMessage(plugin.getPluginPrefix() + ChatColor.YELLOW + " Exporting statuses...");
+            statusManager.exportYaml(sender);
+        } else {
+            sender.sendMessage(plugin.getPluginPrefix() + ChatColor.RED + " You don't have permission to export statuses.");
+            plugin.getFilteredLogger().debug("Player {} tried to export statuses without permission", sender.getName());
+        }
+    }
+
+    /**
+     * Exports all statuses to a CSV or NDJSON file in the plugin folder.
+     *
+     * @param sender The sender of the command.
+     * @param args   The arguments provided with the command.
+     */
+    private void exportCommand(CommandSender sender, String[] args) {
+        if (sender instanceof Player && !sender.hasPermission("StatusPlugin.admin.export")) {
+            sender.sendMessage(plugin.getPluginPrefix() + ChatColor.RED + " You don't have permission to export statuses.");
+            plugin.getFilteredLogger().debug("Player {} tried to export statuses without permission", sender.getName());
+            return;
+        }
+        if (args.length != 2) {
+            sender.sendMessage(plugin.getPluginPrefix() + ChatColor.RED + " Usage: /tsp export <file.csv|file.ndjson>");
+            return;
+        }
+        sender.sendMessage(plugin.getPluginPrefix() + ChatColor.YELLOW + " Exporting statuses...");
+        statusManager.getStatusTransfer().exportStatuses(sender, args[1]);
+    }
+
+    /**
+     * Imports statuses from a CSV or NDJSON file in the plugin folder.
+     *
+     * @param sender The sender of the command.
+     * @param args   The arguments provided with the command.
+     */
+    private void importCommand(CommandSender sender, String[] args) {
+        if (sender instanceof Player && !sender.hasPermission("StatusPlugin.admin.import")) {
+            sender.sendMessage(plugin.getPluginPrefix() + ChatColor.RED + " You don't have permission to import statuses.");
+            plugin.getFilteredLogger().debug("Player {} tried to import statuses without permission", sender.getName());
+            return;
+        }
+        if (args.length < 2 || args.length > 3
+                || (args.length == 3 && !args[2].equalsIgnoreCase("merge") && !args[2].equalsIgnoreCase("replace"))) {
+            sender.sendMessage(plugin.getPluginPrefix() + ChatColor.RED + " Usage: /tsp import <file.csv|file.ndjson> [merge|replace]");
+            return;
+        }
+        statusManager.getStatusTransfer().importStatuses(sender, args[1], args.length == 3 && args[2].equalsIgnoreCase("replace"));
+    }
+
+    /**
+     * Shows the last statuses of a player, newest first.
+     *
+     * @param sender The sender of the command.
+     * @param args   The arguments provided with the command.
+     */
+    @SuppressWarnings("deprecation")
+    private void historyCommand(CommandSender sender, String[] args) {
+        if (sender instanceof Player && !sender.hasPermission("StatusPlugin.admin.history")) {
+            sender.sendMessage(plugin.getPluginPrefix() + ChatColor.RED + " You don't have permission to see status histories.");
+            plugin.getFilteredLogger().debug("Player {} tried to see a status history without permission", sender.getName());
+            return;
+        }
+        if (args.length != 2) {
+            sender.sendMessage(plugin.getPluginPrefix() + ChatColor.RED + " Usage: /tsp history <player>");
+            return;
+        }
+        HistoryManager historyManager = statusManager.getHistoryManager();
+        if (!historyManager.isEnabled()) {
+            sender.sendMessage(plugin.getPluginPrefix() + ChatColor.RED + " The status history is disabled in the config.");
+            return;
+        }
+        Player online = Bukkit.getPlayer(args[1]);
+        if (online != null) {
+            showHistory(sender, online, args[1]);
+            return;
+        }
+        // Looking up an offline player by name can ask the profile server, so it is done off the main thread
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            OfflinePlayer target = Bukkit.getOfflinePlayer(args[1]);
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (!target.hasPlayedBefore()) {
+                    sender.sendMessage(plugin.getPluginPrefix() + ChatColor.RED + " Player not found: " + args[1]);
+                    plugin.getFilteredLogger().debug("Player not found for status history: {}", args[1]);
+                    return;
+                }
+                showHistory(sender, target, args[1]);
+            });
+        });
+    }
+
+    /**
+     * Sends the history of a player once it was read, on the main thread.
+     *
+     * @param sender The sender of the command.
+     * @param target The player whose history is shown.
+     * @param input  The name the sender typed, used if the player's name is unknown.
+     */
+    private void showHistory(CommandSender sender, OfflinePlayer target, String input) {
+        String name = target.getName() != null ? target.getName() : input;
+        statusManager.getHistoryManager().getHistory(target.getUniqueId()).whenComplete((history, error) -> Bukkit.getScheduler().runTask(plugin, () -> {
+            if (error != null) {
+                sender.sendMessage(plugin.getPluginPrefix() + ChatColor.RED + " Could not read the status history of " + name + ".");
+                plugin.getFilteredLogger().error("Could not read the status history of {}: {}", name, error.getMessage());
+                return;
+            }
+            if (history.isEmpty()) {
+                sender.sendMessage(plugin.getPluginPrefix() + ChatColor.YELLOW + " " + name + " has no status history.");
+                return;
+            }
+            sender.sendMessage(plugin.getPluginPrefix() + ChatColor.GOLD + " Status history of " + name + ":");
+            for (HistoryEntry entry : history) {
+                String status = entry.isRemoval()
+                        ? ChatColor.GRAY + "" + ChatColor.ITALIC + "removed"
+                        : ChatColor.WHITE + StatusText.parse(entry.getStatus()).translate(ColourUtils.ALLOW_ALL);
+                sender.sendMessage(ChatColor.GRAY + HISTORY_TIME.format(Instant.ofEpochMilli(entry.getTimestamp()))
+                        + ChatColor.GREEN + " by " + entry.getSetter() + ": " + status);
+            }
+            plugin.getFilteredLogger().debug("{} requested the status history of {}", sender.getName(), name);
+        }));
+    }
+
     /**
      * Handles the help command.
      * If the command has more than one argument and the second argument is
@@ -245,7 +402,10 @@ public class StatusGeneralCommand implements CommandExecutor {
             if (sender.hasPermission("StatusPlugin.admin.setStatus") ||
                 sender.hasPermission("StatusPlugin.admin.reload") ||
                 sender.hasPermission("StatusPlugin.admin.setMaxlength") ||
-                sender.hasPermission("StatusPlugin.admin.resetMaxlength")) {
+                sender.hasPermission("StatusPlugin.admin.resetMaxlength") ||
+                sender.hasPermission("StatusPlugin.admin.export") ||
+                sender.hasPermission("StatusPlugin.admin.import") ||
+                sender.hasPermission("StatusPlugin.admin.history")) {
                 sender.sendMessage(ChatColor.YELLOW + "\nAdmin Commands:");
 
                 if (sender.hasPermission("StatusPlugin.admin.setStatus")) {
@@ -262,6 +422,26 @@ public class StatusGeneralCommand implements CommandExecutor {
                                       ChatColor.GRAY + "- Reload config and all statuses.");
                 }
 
+                if (sender.hasPermission("StatusPlugin.admin.export")) {
+                    sender.sendMessage(ChatColor.RED + "/tsp " + ChatColor.AQUA + "exportyaml " +
+                                      ChatColor.GRAY + "- Export all statuses to statuses-export.yml.");
+                }
+
+                if (sender.hasPermission("StatusPlugin.admin.export")) {
+                    sender.sendMessage(ChatColor.RED + "/tsp " + ChatColor.AQUA + "export <file> " +
+                                      ChatColor.GRAY + "- Export all statuses to a .csv or .ndjson file.");
+                }
+
+                if (sender.hasPermission("StatusPlugin.admin.import")) {
+                    sender.sendMessage(ChatColor.RED + "/tsp " + ChatColor.AQUA + "import <file> [merge|replace] " +
+                                      ChatColor.GRAY + "- Import statuses from a .csv or .ndjson file.");
+                }
+
+                if (sender.hasPermission("StatusPlugin.admin.history")) {
+                    sender.sendMessage(ChatColor.RED + "/tsp " + ChatColor.AQUA + "history <player> " +
+                                      ChatColor.GRAY + "- Show the last statuses of a player.");
+                }
+
                 if (sender.hasPermission("StatusPlugin.admin.setMaxlength")) {
                     sender.sendMessage(ChatColor.RED + "/tsp " + ChatColor.AQUA + "setmaxlength <length> " +
                                       ChatColor.GRAY + "- Set the max length of status.");
@@ -396,7 +576,52 @@ public class StatusGeneralCommand implements CommandExecutor {
             docsLink.setClickEvent(new ClickEvent(ClickEvent.Action.OPEN_URL, "https://docs.pluginz.dev"));
             docsLink.setUnderlined(true);
             sender.spigot().sendMessage(docsLink);
+        if (!(sender instanceof Player) || sender.hasPermission("StatusPlugin.admin.stats")) {
+            sendStatistics(sender);
+        }
         plugin.sendPluginMessages(sender, "line");
         plugin.getFilteredLogger().debug("{} requested plugin info.", sender.getName());
     }
+
+    /**
+     * Displays runtime statistics of the plugin to the sender.
+     *
+     * @param sender The sender of the command.
+     */
+    private void sendStatistics(CommandSender sender) {
+        StatusWriter writer = statusManager.getStatusWriter();
+        sender.sendMessage(ChatColor.YELLOW + "\nStatistics:");
+        sender.sendMessage(ChatColor.GREEN + "Pending status changes: " + ChatColor.WHITE + writer.getPendingChanges());
+        sender.sendMessage(ChatColor.GREEN + "Saves: " + ChatColor.WHITE + writer.getSaveCount()
+                + ChatColor.GREEN + " (last " + ChatColor.WHITE + String.format("%.2f ms", writer.getLastSaveMillis())
+                + ChatColor.GREEN + ", avg " + ChatColor.WHITE + String.format("%.2f ms", writer.getAverageSaveMillis())
+                + ChatColor.GREEN + ")");
+        sender.sendMessage(ChatColor.GREEN + "Storage: " + ChatColor.WHITE + writer.getStore().getName()
+                + (statusManager.isLazyLoading() ? ChatColor.GREEN + " (lazy loading)" : ""));
+        StatusCache cache = statusManager.getStatusCache();
+        sender.sendMessage(ChatColor.GREEN + "Statuses in memory: " + ChatColor.WHITE + cache.size()
+                + (cache.getMaxSize() != Integer.MAX_VALUE ? ChatColor.GREEN + " of " + ChatColor.WHITE + cache.getMaxSize() : ""));
+        sender.sendMessage(ChatColor.GREEN + "Cache: " + ChatColor.WHITE + cache.getHits() + ChatColor.GREEN + " hits, "
+                + ChatColor.WHITE + cache.getMisses() + ChatColor.GREEN + " misses, "
+                + ChatColor.WHITE + cache.getEvictions() + ChatColor.GREEN + " evictions");
+        for (Map.Entry<String, String> statistic : statusManager.getDisplayNameUpdater().getStatistics().entrySet()) {
+            sender.sendMessage(ChatColor.GREEN + statistic.getKey() + ": " + ChatColor.WHITE + statistic.getValue());
+        }
+        if (statusManager.getStatusTeams() != null) {
+            for (Map.Entry<String, String> statistic : statusManager.getStatusTeams().getStatistics().entrySet()) {
+                sender.sendMessage(ChatColor.GREEN + statistic.getKey() + ": " + ChatColor.WHITE + statistic.getValue());
+            }
+        }
+        for (Map.Entry<String, String> statistic : statusManager.getStatusRenderer().getStatistics().entrySet()) {
+            sender.sendMessage(ChatColor.GREEN + statistic.getKey() + ": " + ChatColor.WHITE + statistic.getValue());
+        }
+        for (Map.Entry<String, String> statistic : writer.getStore().getStatistics().entrySet()) {
+            sender.sendMessage(ChatColor.GREEN + statistic.getKey() + ": " + ChatColor.WHITE + statistic.getValue());
+        }
+        if (statusManager.getSyncManager() != null) {
+            for (Map.Entry<String, String> statistic : statusManager.getSyncManager().getStatistics().entrySet()) {
+                sender.sendMessage(ChatColor.GREEN + statistic.getKey() + ": " + ChatColor.WHITE + statistic.getValue());
+            }
+        }
+    }
 }
\ No newline at end of file
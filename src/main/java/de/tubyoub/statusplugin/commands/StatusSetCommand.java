@@ -2,6 +2,7 @@ package de.tubyoub.statusplugin.commands;
 
 import de.tubyoub.statusplugin.Managers.StatusManager;
 import de.tubyoub.statusplugin.StatusPlugin;
+import de.tubyoub.statusplugin.model.StatusText;
 import de.tubyoub.utils.ColourUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
@@ -99,7 +100,7 @@ public class StatusSetCommand implements CommandExecutor {
             String status = Arrays.stream(args, 1, args.length).collect(Collectors.joining(" "));
             if (statusManager.setStatus(target, status, player)) {
                 player.sendMessage(plugin.getPluginPrefix() + " Set " + target.getName() + "'s status to: "
-                        + ColourUtils.format(status));
+                        + StatusText.parse(status).translate(ColourUtils.ALLOW_ALL));
                 plugin.getFilteredLogger().debug("Player {} set status for {} to: {}",
                         player.getName(), target.getName(), status);
             }
@@ -116,8 +117,8 @@ public class StatusSetCommand implements CommandExecutor {
             String status = String.join(" ", args);
             if (statusManager.setStatus(player, status, player)) {
                 player.sendMessage(plugin.getPluginPrefix() + " Your status has been set to: " + "["
-                        + ColourUtils.format(statusManager.translateColorsAndFormatting(
-                            statusManager.getStatus(player), player)) + ChatColor.RESET + "]");
+                        + ColourUtils.format(statusManager.getStatusText(player).translate(
+                            statusManager.getFormattingPermissions(player))) + ChatColor.RESET + "]");
                 plugin.getFilteredLogger().debug("Player {} set their status to: {}", player.getName(), status);
             }
         }
@@ -227,7 +228,7 @@ public class StatusSetCommand implements CommandExecutor {
             return;
         }
 
-        statusManager.removeStatus(target);
+        statusManager.removeStatus(target, sender);
         sender.sendMessage(plugin.getPluginPrefix() + ChatColor.GREEN + " Status for " +
                 target.getName() + " has been removed.");
         plugin.getFilteredLogger().info("Player {} removed status for {}", sender.getName(), target.getName());
@@ -6,6 +6,7 @@ import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -52,6 +53,16 @@ public class StatusGeneralTabCompleter implements TabCompleter {
             if (sender.hasPermission("StatusPlugin.admin.resetMaxlength") || !(sender instanceof Player)) {
                 suggestions.add("resetmaxlength");
             }
+            if (sender.hasPermission("StatusPlugin.admin.export") || !(sender instanceof Player)) {
+                suggestions.add("exportyaml");
+                suggestions.add("export");
+            }
+            if (sender.hasPermission("StatusPlugin.admin.import") || !(sender instanceof Player)) {
+                suggestions.add("import");
+            }
+            if (sender.hasPermission("StatusPlugin.admin.history") || !(sender instanceof Player)) {
+                suggestions.add("history");
+            }
             plugin.getFilteredLogger().debug("Suggested first arguments for /tsp: {}", suggestions);
         } else if (args.length == 2) {
             // Add suggestions for the second argument of the command based on the first argument
@@ -63,6 +74,20 @@ public class StatusGeneralTabCompleter implements TabCompleter {
                 // If the first argument is "setstatus", suggest the names of online players
                 suggestions.addAll(Bukkit.getOnlinePlayers().stream().map(Player::getName).collect(Collectors.toList()));
                 plugin.getFilteredLogger().debug("Suggested players for /tsp setstatus: {}", suggestions);
+            } else if (args[0].equalsIgnoreCase("history") && (sender.hasPermission("StatusPlugin.admin.history") || !(sender instanceof Player))) {
+                // If the first argument is "history", suggest the names of online players
+                suggestions.addAll(Bukkit.getOnlinePlayers().stream().map(Player::getName).collect(Collectors.toList()));
+                plugin.getFilteredLogger().debug("Suggested players for /tsp history: {}", suggestions);
+            } else if (args[0].equalsIgnoreCase("import") && (sender.hasPermission("StatusPlugin.admin.import") || !(sender instanceof Player))) {
+                // If the first argument is "import", suggest the files in the plugin folder that can be imported
+                File[] files = plugin.getDataFolder().listFiles((dir, name) -> name.endsWith(".csv") || name.endsWith(".ndjson")
+                        || name.endsWith(".jsonl") || name.endsWith(".json"));
+                if (files != null) {
+                    for (File file : files) {
+                        suggestions.add(file.getName());
+                    }
+                }
+                plugin.getFilteredLogger().debug("Suggested files for /tsp import: {}", suggestions);
             } else if (args[0].equalsIgnoreCase("setmaxlength") && (sender.hasPermission("StatusPlugin.admin.setMaxlength") || !(sender instanceof Player))) {
                 // If the first argument is "setmaxlength", suggest some default lengths
                 suggestions.add("10");
@@ -74,6 +99,9 @@ public class StatusGeneralTabCompleter implements TabCompleter {
                 suggestions.add("colorcodes");
                 plugin.getFilteredLogger().debug("Suggested help topic for /tsp help: {}", suggestions);
             }
+        } else if (args.length == 3 && args[0].equalsIgnoreCase("import") && (sender.hasPermission("StatusPlugin.admin.import") || !(sender instanceof Player))) {
+            suggestions.add("merge");
+            suggestions.add("replace");
         } else if (args.length == 3 && args[0].equalsIgnoreCase("setstatus") && (sender.hasPermission("StatusPlugin.admin.setStatus") || !(sender instanceof Player))) {
             // If the command is /tsp setstatus <player>, suggest available groups if group mode is on
              if (plugin.getConfigManager().isGroupMode()) {
@@ -0,0 +1,41 @@
+package de.tubyoub.statusplugin.model;
+
+import java.util.UUID;
+
+/**
+ * One past status of a player, with the time it was set and who set it.
+ * An entry without a status records that the status was removed.
+ */
+public class HistoryEntry {
+    private final UUID uuid;
+    private final long timestamp;
+    private final String setter;
+    private final String status;
+
+    public HistoryEntry(UUID uuid, long timestamp, String setter, String status) {
+        this.uuid = uuid;
+        this.timestamp = timestamp;
+        this.setter = setter;
+        this.status = status;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getSetter() {
+        return setter;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public boolean isRemoval() {
+        return status == null;
+    }
+}
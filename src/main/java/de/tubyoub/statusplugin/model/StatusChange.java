@@ -0,0 +1,29 @@
+package de.tubyoub.statusplugin.model;
+
+import java.util.UUID;
+
+/**
+ * A single change of a player's status that still has to be persisted.
+ * A change without a status removes the player's status.
+ */
+public class StatusChange {
+    private final UUID uuid;
+    private final String status;
+
+    public StatusChange(UUID uuid, String status) {
+        this.uuid = uuid;
+        this.status = status;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public boolean isRemoval() {
+        return status == null;
+    }
+}
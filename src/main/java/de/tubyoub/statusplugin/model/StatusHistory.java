@@ -0,0 +1,72 @@
+package de.tubyoub.statusplugin.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The last statuses of one player, kept in a fixed-size ring.
+ * Entries are stored in parallel arrays instead of one object each, and once the ring is full
+ * a new entry overwrites the oldest one, so adding is O(1) and the size never grows.
+ */
+public class StatusHistory {
+    private final UUID uuid;
+    private final long[] timestamps;
+    private final String[] setters;
+    private final String[] statuses;
+    private int next;
+    private int size;
+
+    /**
+     * Constructor for the StatusHistory class.
+     *
+     * @param uuid     The UUID of the player the history belongs to.
+     * @param capacity The number of entries kept.
+     */
+    public StatusHistory(UUID uuid, int capacity) {
+        this.uuid = uuid;
+        this.timestamps = new long[capacity];
+        this.setters = new String[capacity];
+        this.statuses = new String[capacity];
+    }
+
+    /**
+     * Adds an entry, replacing the oldest one if the ring is full.
+     *
+     * @param timestamp The time the status was set, in milliseconds since the epoch.
+     * @param setter    The name of whoever set the status.
+     * @param status    The new status, or null if the status was removed.
+     */
+    public synchronized void add(long timestamp, String setter, String status) {
+        timestamps[next] = timestamp;
+        setters[next] = setter;
+        statuses[next] = status;
+        next = (next + 1) % timestamps.length;
+        if (size < timestamps.length) {
+            size++;
+        }
+    }
+
+    /**
+     * Returns the entries, newest first.
+     *
+     * @return A copy of the entries.
+     */
+    public synchronized List<HistoryEntry> getEntries() {
+        List<HistoryEntry> entries = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            int index = (next - i + timestamps.length) % timestamps.length;
+            entries.add(new HistoryEntry(uuid, timestamps[index], setters[index], statuses[index]));
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the number of entries held.
+     *
+     * @return The entry count.
+     */
+    public synchronized int size() {
+        return size;
+    }
+}
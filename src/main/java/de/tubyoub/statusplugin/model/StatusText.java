@@ -0,0 +1,415 @@
+package de.tubyoub.statusplugin.model;
+
+import de.tubyoub.utils.ColourUtils;
+import de.tubyoub.utils.MiniMessageTemplates;
+import org.bukkit.ChatColor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A status parsed into tokens: literal text, colour and format codes, hex colours, MiniMessage tags,
+ * %placeholder% spans and &amp;_ spaces.
+ * The status is parsed once, the effective length, the stripped text and the placeholders are computed
+ * while parsing, and the last translation is kept, so rendering a status again does not scan it again.
+ * Instances are immutable apart from that translation cache and safe to share between threads.
+ */
+public final class StatusText {
+    public static final String LUCKPERMS_PREFIX = "%LP_prefix%";
+    public static final String LUCKPERMS_SUFFIX = "%LP_suffix%";
+    /** Start of PlaceholderAPI relational placeholders, which are resolved between two players. */
+    public static final String RELATIONAL_PREFIX = "%rel_";
+    // Private use characters standing in for placeholders while a rich status is rendered through MiniMessage
+    private static final char MARKER_BASE = '\uE000';
+    private static final int MAX_MARKERS = '\uF8FF' - '\uE000';
+    public static final StatusText EMPTY = parse("");
+
+    /**
+     * The kinds of tokens a status consists of.
+     */
+    public enum TokenType {
+        TEXT,
+        CODE,
+        TAG,
+        PLACEHOLDER,
+        SPACE
+    }
+
+    /**
+     * What a status needs to be resolved for every render.
+     */
+    public enum Kind {
+        /** No placeholders, the rendered text never changes. */
+        STATIC,
+        /** PlaceholderAPI placeholders, possibly with LuckPerms placeholders as well. */
+        PLACEHOLDER_API,
+        /** Only the %LP_prefix% and %LP_suffix% placeholders, resolved without PlaceholderAPI. */
+        LUCKPERMS
+    }
+
+    /**
+     * One token of a status.
+     */
+    public static final class Token {
+        private final TokenType type;
+        private final String text;
+
+        Token(TokenType type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+
+        public TokenType getType() {
+            return type;
+        }
+
+        /**
+         * Returns the text of the token: the literal text, the lower case code character or hex colour
+         * like {@code #ff8800}, the tag including its angle brackets, the placeholder including its percent signs
+         * or a single space.
+         *
+         * @return The token text.
+         */
+        public String getText() {
+            return text;
+        }
+    }
+
+    /**
+     * The last translation, replaced as a whole so readers never see a mask with the wrong result.
+     */
+    private static final class Translation {
+        final int allowed;
+        final String result;
+        // Translated text and placeholders in turn, starting and ending with text
+        final List<String> segments;
+
+        Translation(int allowed, List<String> segments) {
+            this.allowed = allowed;
+            this.result = String.join("", segments);
+            this.segments = Collections.unmodifiableList(segments);
+        }
+    }
+
+    private final String raw;
+    private final List<Token> tokens;
+    private final List<String> placeholders;
+    private final String strippedText;
+    private final int effectiveLength;
+    // Has hex colours or tags, so it is rendered through MiniMessage
+    private final boolean rich;
+    private final Kind kind;
+    private final boolean luckPermsPlaceholders;
+    private final boolean relationalPlaceholders;
+    private volatile Translation translation;
+
+    private StatusText(String raw, List<Token> tokens, List<String> placeholders, String strippedText,
+                       int effectiveLength, boolean rich) {
+        this.raw = raw;
+        this.rich = rich;
+        this.tokens = tokens;
+        this.placeholders = placeholders;
+        this.strippedText = strippedText;
+        this.effectiveLength = effectiveLength;
+        this.luckPermsPlaceholders = placeholders.contains(LUCKPERMS_PREFIX) || placeholders.contains(LUCKPERMS_SUFFIX);
+        this.kind = classify(placeholders, luckPermsPlaceholders);
+        this.relationalPlaceholders = hasRelationalPlaceholder(placeholders);
+    }
+
+    private static Kind classify(List<String> placeholders, boolean luckPermsPlaceholders) {
+        for (String placeholder : placeholders) {
+            if (!placeholder.equals(LUCKPERMS_PREFIX) && !placeholder.equals(LUCKPERMS_SUFFIX)) {
+                return Kind.PLACEHOLDER_API;
+            }
+        }
+        return luckPermsPlaceholders ? Kind.LUCKPERMS : Kind.STATIC;
+    }
+
+    private static boolean hasRelationalPlaceholder(List<String> placeholders) {
+        for (String placeholder : placeholders) {
+            if (placeholder.startsWith(RELATIONAL_PREFIX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses a status in a single pass.
+     *
+     * @param raw The status as it was set, with &amp; codes.
+     * @return The parsed status.
+     */
+    public static StatusText parse(String raw) {
+        List<Token> tokens = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>(0);
+        StringBuilder stripped = new StringBuilder(raw.length());
+        StringBuilder literal = new StringBuilder();
+        int effectiveLength = 0;
+        boolean rich = false;
+        int length = raw.length();
+        for (int i = 0; i < length; i++) {
+            char c = raw.charAt(i);
+            if (c == '&' && i + 1 < length) {
+                char code = Character.toLowerCase(raw.charAt(i + 1));
+                if (code == '#' && MiniMessageTemplates.isHexColour(raw, i + 2)) {
+                    flush(literal, tokens);
+                    tokens.add(new Token(TokenType.CODE, raw.substring(i + 1, i + 8).toLowerCase()));
+                    rich = true;
+                    i += 7;
+                    continue;
+                }
+                if (code == '_' || ColourUtils.getRequiredPermissions(code) >= 0) {
+                    flush(literal, tokens);
+                    if (code == '_') {
+                        tokens.add(new Token(TokenType.SPACE, " "));
+                        stripped.append(' ');
+                        effectiveLength++;
+                    } else {
+                        tokens.add(new Token(TokenType.CODE, String.valueOf(code)));
+                    }
+                    i++;
+                    continue;
+                }
+            } else if (c == '<') {
+                int end = MiniMessageTemplates.findTagEnd(raw, i);
+                if (end > 0) {
+                    flush(literal, tokens);
+                    tokens.add(new Token(TokenType.TAG, raw.substring(i, end + 1)));
+                    rich = true;
+                    i = end;
+                    continue;
+                }
+            } else if (c == '%') {
+                int end = raw.indexOf('%', i + 1);
+                if (end > i + 1) {
+                    flush(literal, tokens);
+                    String placeholder = raw.substring(i, end + 1);
+                    tokens.add(new Token(TokenType.PLACEHOLDER, placeholder));
+                    placeholders.add(placeholder);
+                    stripped.append(placeholder);
+                    i = end;
+                    continue;
+                }
+            }
+            literal.append(c);
+            stripped.append(c);
+            effectiveLength++;
+        }
+        flush(literal, tokens);
+        return new StatusText(raw, Collections.unmodifiableList(tokens),
+                placeholders.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(placeholders),
+                stripped.toString(), effectiveLength, rich);
+    }
+
+    private static void flush(StringBuilder literal, List<Token> tokens) {
+        if (literal.length() > 0) {
+            tokens.add(new Token(TokenType.TEXT, literal.toString()));
+            literal.setLength(0);
+        }
+    }
+
+    /**
+     * Returns the status as it was set.
+     *
+     * @return The raw status.
+     */
+    public String getRaw() {
+        return raw;
+    }
+
+    public List<Token> getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Returns the number of visible characters, without codes and placeholders.
+     *
+     * @return The effective length.
+     */
+    public int getEffectiveLength() {
+        return effectiveLength;
+    }
+
+    /**
+     * Returns the status without colour and format codes, placeholders are kept.
+     *
+     * @return The stripped text.
+     */
+    public String getStrippedText() {
+        return strippedText;
+    }
+
+    /**
+     * Returns the placeholders of the status in order, including their percent signs.
+     *
+     * @return The placeholders, empty if there are none.
+     */
+    public List<String> getPlaceholders() {
+        return placeholders;
+    }
+
+    public boolean hasPlaceholders() {
+        return !placeholders.isEmpty();
+    }
+
+    /**
+     * Returns what the status needs to be resolved, worked out once while parsing.
+     *
+     * @return The kind of the status.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns whether the rendered status can change without the status changing.
+     *
+     * @return true if the status has placeholders.
+     */
+    public boolean isDynamic() {
+        return kind != Kind.STATIC;
+    }
+
+    /**
+     * Returns whether the status has placeholders that only PlaceholderAPI can resolve.
+     *
+     * @return true if PlaceholderAPI has to see the status.
+     */
+    public boolean usesPlaceholderAPI() {
+        return kind == Kind.PLACEHOLDER_API;
+    }
+
+    /**
+     * Returns whether the status has %LP_prefix% or %LP_suffix%.
+     *
+     * @return true if the LuckPerms meta has to be looked up.
+     */
+    public boolean usesLuckPerms() {
+        return luckPermsPlaceholders;
+    }
+
+    /**
+     * Returns whether the status has PlaceholderAPI relational placeholders like %rel_distance%.
+     *
+     * @return true if the status depends on who reads it.
+     */
+    public boolean usesRelationalPlaceholders() {
+        return relationalPlaceholders;
+    }
+
+    /**
+     * Returns whether the status has hex colours or MiniMessage tags.
+     *
+     * @return true if the status is rendered through MiniMessage.
+     */
+    public boolean isRich() {
+        return rich;
+    }
+
+    public boolean isEmpty() {
+        return raw.isEmpty();
+    }
+
+    /**
+     * Builds the legacy text with section sign codes, dropping the codes and tags that are not allowed.
+     * Placeholders are kept so they can be resolved afterwards. Statuses with hex colours or tags are
+     * rendered from a compiled MiniMessage template.
+     *
+     * @param allowed The permission bits, see {@link ColourUtils#ALLOW_COLOR}.
+     * @return The translated status.
+     */
+    public String translate(int allowed) {
+        return getTranslation(allowed).result;
+    }
+
+    /**
+     * Translates the status like {@link #translate(int)}, split at the placeholder tokens found while parsing,
+     * so placeholders can be resolved without scanning the translated text for percent signs.
+     *
+     * @param allowed The permission bits, see {@link ColourUtils#ALLOW_COLOR}.
+     * @return The translated text around the placeholders and the placeholders in turn,
+     * starting and ending with text, so it has an odd number of elements.
+     */
+    public List<String> translateSegments(int allowed) {
+        return getTranslation(allowed).segments;
+    }
+
+    private Translation getTranslation(int allowed) {
+        Translation last = translation;
+        if (last != null && last.allowed == allowed) {
+            return last;
+        }
+        Translation result = new Translation(allowed, rich ? translateRich(allowed) : translatePlain(allowed));
+        translation = result;
+        return result;
+    }
+
+    private List<String> translatePlain(int allowed) {
+        List<String> segments = new ArrayList<>(placeholders.size() * 2 + 1);
+        StringBuilder builder = new StringBuilder(raw.length());
+        for (Token token : tokens) {
+            if (token.type == TokenType.PLACEHOLDER) {
+                segments.add(builder.toString());
+                segments.add(token.text);
+                builder.setLength(0);
+            } else if (token.type != TokenType.CODE) {
+                builder.append(token.text);
+            } else {
+                int required = ColourUtils.getRequiredPermissions(token.text.charAt(0));
+                if ((allowed & required) == required) {
+                    builder.append(ChatColor.COLOR_CHAR).append(token.text);
+                }
+            }
+        }
+        segments.add(builder.toString());
+        return segments;
+    }
+
+    /**
+     * Renders the status through MiniMessage with every placeholder replaced by one marker character,
+     * so gradients colour the placeholder as one character instead of putting codes inside it,
+     * and splits the result at the markers.
+     */
+    private List<String> translateRich(int allowed) {
+        if (placeholders.size() > MAX_MARKERS) {
+            return Collections.singletonList(MiniMessageTemplates.render(raw, allowed));
+        }
+        StringBuilder marked = new StringBuilder(raw.length());
+        int index = 0;
+        for (Token token : tokens) {
+            switch (token.type) {
+                case PLACEHOLDER:
+                    marked.append((char) (MARKER_BASE + index++));
+                    break;
+                case CODE:
+                    marked.append('&').append(token.text);
+                    break;
+                case SPACE:
+                    marked.append("&_");
+                    break;
+                default:
+                    marked.append(token.text);
+            }
+        }
+        String rendered = MiniMessageTemplates.render(marked.toString(), allowed);
+        List<String> segments = new ArrayList<>(placeholders.size() * 2 + 1);
+        int start = 0;
+        for (int i = 0; i < rendered.length(); i++) {
+            int marker = rendered.charAt(i) - MARKER_BASE;
+            if (marker >= 0 && marker < placeholders.size()) {
+                segments.add(rendered.substring(start, i));
+                segments.add(placeholders.get(marker));
+                start = i + 1;
+            }
+        }
+        segments.add(rendered.substring(start));
+        return segments;
+    }
+
+    @Override
+    public String toString() {
+        return raw;
+    }
+}
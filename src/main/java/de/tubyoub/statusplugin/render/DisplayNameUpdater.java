@@ -0,0 +1,402 @@
+package de.tubyoub.statusplugin.render;
+
+import de.tubyoub.statusplugin.Managers.ConfigManager;
+import de.tubyoub.statusplugin.Managers.StatusManager;
+import de.tubyoub.statusplugin.StatusPlugin;
+import de.tubyoub.statusplugin.model.StatusText;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the display and tablist names of online players up to date without rendering everyone periodically.
+ * Status changes, permission and meta changes and reloads mark single players dirty, and a task that runs
+ * every tick renders only the dirty players. Players with PlaceholderAPI placeholders in their status are marked
+ * dirty again when the cached values of their placeholders expire. A full sweep over all online players is
+ * only kept as a rare safety net, configured with tablist.sweepInterval.
+ * <p>
+ * Dirty players wait in a queue that is drained for at most tablist.tickBudget microseconds per tick, so a join
+ * storm after a restart is spread over several ticks. Players that just joined are rendered first, and a player
+ * that is marked again while still waiting keeps their place instead of being rendered twice.
+ * <p>
+ * With tablist.renderThreads above 0 the main thread only takes a {@link RenderSnapshot} of each player,
+ * the names are rendered by a worker pool and set on the main thread in one batch at the start of the next tick.
+ * A result is dropped if the player was marked again or their status was removed while it was rendered.
+ * <p>
+ * A setter is skipped if the player already has the name, compared with the name the player has right now,
+ * so names another plugin changed are set again. Every tablist name that is set is sent to all online players,
+ * so unchanged names are not sent again.
+ */
+public class DisplayNameUpdater {
+    // Placeholders that are not cached still don't refresh the tablist more than once a second
+    private static final long MIN_REFRESH_MILLIS = 1000L;
+
+    private final StatusPlugin plugin;
+    private final StatusManager statusManager;
+    private final ConfigManager configManager;
+    // Players waiting to be rendered, every player is in one of the queues at most once
+    private final Set<UUID> queued = ConcurrentHashMap.newKeySet();
+    private final Queue<UUID> joinQueue = new ConcurrentLinkedQueue<>();
+    private final Queue<UUID> queue = new ConcurrentLinkedQueue<>();
+    // When online players with PlaceholderAPI placeholders are due to be rendered again
+    private final Map<UUID, Long> refreshTimes = new ConcurrentHashMap<>();
+    // The newest render on a worker thread per player, older results are dropped
+    private final Map<UUID, Long> inFlight = new ConcurrentHashMap<>();
+    private final Queue<Result> results = new ConcurrentLinkedQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private ExecutorService renderPool;
+    private int renderThreads;
+    private long batches;
+    private int lastBatchSize;
+    private long discarded;
+    private long appliedDisplayNames;
+    private long appliedListNames;
+    private long suppressed;
+    private long updates;
+    private long sweeps;
+    private int maxDepth;
+    private long drains;
+    private long drainNanos;
+    private long lastDrainNanos;
+    private long budgetExceeded;
+
+    /**
+     * A display name rendered on a worker thread, waiting to be set on the main thread.
+     */
+    private static final class Result {
+        final UUID uuid;
+        final long sequence;
+        final String namePrefix;
+        final StatusText text;
+
+        Result(UUID uuid, long sequence, String namePrefix, StatusText text) {
+            this.uuid = uuid;
+            this.sequence = sequence;
+            this.namePrefix = namePrefix;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Constructor for the DisplayNameUpdater class.
+     *
+     * @param plugin        The StatusPlugin instance.
+     * @param statusManager The StatusManager that renders the names.
+     */
+    public DisplayNameUpdater(StatusPlugin plugin, StatusManager statusManager) {
+        this.plugin = plugin;
+        this.statusManager = statusManager;
+        this.configManager = plugin.getConfigManager();
+    }
+
+    /**
+     * Starts the render pool and schedules the per tick update and the safety net sweep.
+     */
+    public void start() {
+        renderThreads = configManager.getTablistRenderThreads();
+        if (renderThreads > 0) {
+            AtomicLong threadNumber = new AtomicLong();
+            renderPool = Executors.newFixedThreadPool(renderThreads, runnable -> {
+                Thread thread = new Thread(runnable, "TubsStatusPlugin-Render-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        Bukkit.getScheduler().runTaskTimer(plugin, this::drain, 1L, 1L);
+        long sweepTicks = configManager.getTablistSweepInterval() * 20L;
+        if (sweepTicks > 0) {
+            Bukkit.getScheduler().runTaskTimer(plugin, this::sweep, sweepTicks, sweepTicks);
+        }
+    }
+
+    /**
+     * Marks a player to be rendered on the next tick. Does nothing if the tablist formatter is disabled.
+     *
+     * @param uuid The player's UUID.
+     */
+    public void markDirty(UUID uuid) {
+        if (!configManager.isTablistFormatter()) {
+            return;
+        }
+        if (queued.add(uuid)) {
+            queue.add(uuid);
+        } else {
+            merged.incrementAndGet();
+        }
+    }
+
+    /**
+     * Marks a player that just joined, they are rendered before everyone else that is waiting.
+     *
+     * @param uuid The player's UUID.
+     */
+    public void markJoined(UUID uuid) {
+        if (!configManager.isTablistFormatter()) {
+            return;
+        }
+        // A place further back in the other queue is skipped once the player was rendered
+        queued.add(uuid);
+        joinQueue.add(uuid);
+    }
+
+    /**
+     * Marks every online player to be rendered on the next tick.
+     */
+    public void markAllDirty() {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            markDirty(player.getUniqueId());
+        }
+    }
+
+    /**
+     * Remembers when a player that was just rendered has to be rendered again.
+     *
+     * @param player The player.
+     * @param text   The status that was rendered.
+     */
+    public void rendered(Player player, StatusText text) {
+        long refreshMillis = getRefreshMillis(player, text);
+        if (refreshMillis > 0) {
+            refreshTimes.put(player.getUniqueId(), System.currentTimeMillis() + refreshMillis);
+        } else {
+            refreshTimes.remove(player.getUniqueId());
+        }
+    }
+
+    /**
+     * Forgets a player whose name does not need to be rendered anymore.
+     *
+     * @param uuid The player's UUID.
+     */
+    public void forget(UUID uuid) {
+        queued.remove(uuid);
+        inFlight.remove(uuid);
+        refreshTimes.remove(uuid);
+    }
+
+    /**
+     * Sets the display and tablist name of a player. A setter is skipped if the player already has the name.
+     * Must be called on the main thread.
+     *
+     * @param player      The player.
+     * @param displayName The display name.
+     * @param listName    The tablist name.
+     * @return true if at least one name was set.
+     */
+    public boolean apply(Player player, String displayName, String listName) {
+        boolean changed = false;
+        if (!displayName.equals(player.getDisplayName())) {
+            player.setDisplayName(displayName);
+            appliedDisplayNames++;
+            changed = true;
+        } else {
+            suppressed++;
+        }
+        return applyListName(player, listName) || changed;
+    }
+
+    /**
+     * Sets only the tablist name of a player, skipped if the player already has it.
+     * Must be called on the main thread.
+     *
+     * @param player   The player.
+     * @param listName The tablist name.
+     * @return true if the name was set.
+     */
+    public boolean applyListName(Player player, String listName) {
+        if (listName.equals(player.getPlayerListName())) {
+            suppressed++;
+            return false;
+        }
+        player.setPlayerListName(listName);
+        appliedListNames++;
+        return true;
+    }
+
+    /**
+     * Forgets all players, used when all statuses were reset.
+     */
+    public void clear() {
+        queued.clear();
+        joinQueue.clear();
+        queue.clear();
+        inFlight.clear();
+        refreshTimes.clear();
+    }
+
+    /**
+     * Stops the render pool, called when the plugin is disabled.
+     */
+    public void close() {
+        if (renderPool != null) {
+            renderPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns updater statistics shown in /tsp info.
+     *
+     * @return The statistics by name.
+     */
+    public Map<String, String> getStatistics() {
+        Map<String, String> statistics = new LinkedHashMap<>();
+        statistics.put("Name updates", updates + " rendered, " + merged.get() + " merged, "
+                + refreshTimes.size() + " with placeholders, " + sweeps + " sweeps");
+        statistics.put("Name queue", queued.size() + " waiting, " + maxDepth + " at most, budget "
+                + configManager.getTablistTickBudget() + " \u00b5s per tick");
+        statistics.put("Name queue drain", String.format("last %.3f ms, avg %.3f ms, %d ticks over budget",
+                lastDrainNanos / 1_000_000.0, drains > 0 ? drainNanos / 1_000_000.0 / drains : 0.0, budgetExceeded));
+        statistics.put("Name changes", appliedDisplayNames + " display names and " + appliedListNames
+                + " tablist names set, " + suppressed + " unchanged skipped");
+        statistics.put("Render pool", renderPool == null ? "off, names are rendered on the main thread"
+                : renderThreads + " threads, " + inFlight.size() + " rendering, " + batches + " batches (last "
+                + lastBatchSize + " names), " + discarded + " outdated results dropped");
+        return statistics;
+    }
+
+    /**
+     * Renders the players that were marked dirty or whose placeholders expired, until the tick budget is used up.
+     * Runs every tick.
+     */
+    private void drain() {
+        if (!results.isEmpty()) {
+            applyResults();
+        }
+        if (!refreshTimes.isEmpty()) {
+            long now = System.currentTimeMillis();
+            for (Map.Entry<UUID, Long> entry : refreshTimes.entrySet()) {
+                // A render still running on the pool sets the next refresh time once it is applied,
+                // queueing the player again would replace it and drop every render slower than a tick
+                if (entry.getValue() <= now && !inFlight.containsKey(entry.getKey()) && queued.add(entry.getKey())) {
+                    queue.add(entry.getKey());
+                }
+            }
+        }
+        if (queued.isEmpty()) {
+            return;
+        }
+        maxDepth = Math.max(maxDepth, queued.size());
+        long start = System.nanoTime();
+        long budget = configManager.getTablistTickBudget() * 1000L;
+        UUID uuid;
+        while ((uuid = poll()) != null) {
+            Player player = Bukkit.getPlayer(uuid);
+            if (player == null) {
+                refreshTimes.remove(uuid);
+            } else if (renderPool == null) {
+                statusManager.updateDisplayName(player);
+                updates++;
+            } else {
+                submit(player);
+            }
+            if (System.nanoTime() - start >= budget) {
+                if (!queued.isEmpty()) {
+                    budgetExceeded++;
+                }
+                break;
+            }
+        }
+        lastDrainNanos = System.nanoTime() - start;
+        drainNanos += lastDrainNanos;
+        drains++;
+    }
+
+    /**
+     * Takes a snapshot of a player and renders their name on the render pool.
+     */
+    private void submit(Player player) {
+        RenderSnapshot snapshot = statusManager.getStatusRenderer().snapshot(player);
+        UUID uuid = snapshot.getUniqueId();
+        long number = sequence.incrementAndGet();
+        inFlight.put(uuid, number);
+        try {
+            renderPool.execute(() -> {
+                try {
+                    String namePrefix = statusManager.getStatusRenderer().getNamePrefix(snapshot);
+                    results.add(new Result(uuid, number, namePrefix, snapshot.getText()));
+                } catch (RuntimeException e) {
+                    inFlight.remove(uuid, number);
+                    plugin.getFilteredLogger().warn("Could not render the display name of {}: {}", snapshot.name, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Plugin is being disabled
+            inFlight.remove(uuid, number);
+        }
+    }
+
+    /**
+     * Sets the display names rendered by the render pool since the last tick.
+     */
+    private void applyResults() {
+        int applied = 0;
+        Result result;
+        while ((result = results.poll()) != null) {
+            if (!inFlight.remove(result.uuid, result.sequence)) {
+                discarded++;
+                continue;
+            }
+            Player player = Bukkit.getPlayer(result.uuid);
+            if (player != null) {
+                statusManager.applyNamePrefix(player, result.namePrefix, result.text);
+                applied++;
+            }
+        }
+        if (applied > 0) {
+            updates += applied;
+            batches++;
+            lastBatchSize = applied;
+        }
+    }
+
+    /**
+     * Takes the next player to render, joined players first. Skips entries of players that were rendered
+     * or forgotten since they were added.
+     */
+    private UUID poll() {
+        UUID uuid;
+        while ((uuid = joinQueue.poll()) != null || (uuid = queue.poll()) != null) {
+            if (queued.remove(uuid)) {
+                return uuid;
+            }
+        }
+        return null;
+    }
+
+    private void sweep() {
+        sweeps++;
+        markAllDirty();
+    }
+
+    /**
+     * Returns how long the rendered name of a player stays valid, the shortest cache time of its PlaceholderAPI placeholders.
+     *
+     * @return The time in milliseconds, 0 if the name only changes when the player is marked dirty.
+     */
+    private long getRefreshMillis(Player player, StatusText text) {
+        if (!text.usesPlaceholderAPI() || !plugin.isPlaceholderAPIPresent()
+                || (statusManager.getPermissionCache().get(player) & PermissionCache.PLACEHOLDERS) == 0) {
+            return 0;
+        }
+        long refreshMillis = Long.MAX_VALUE;
+        for (String placeholder : text.getPlaceholders()) {
+            if (!placeholder.equals(StatusText.LUCKPERMS_PREFIX) && !placeholder.equals(StatusText.LUCKPERMS_SUFFIX)) {
+                refreshMillis = Math.min(refreshMillis,
+                        configManager.getPlaceholderCacheMillis(PlaceholderCache.getIdentifier(placeholder)));
+            }
+        }
+        return Math.max(MIN_REFRESH_MILLIS, refreshMillis);
+    }
+}
@@ -0,0 +1,166 @@
+package de.tubyoub.statusplugin.render;
+
+import de.tubyoub.statusplugin.Managers.StatusManager;
+import de.tubyoub.statusplugin.StatusPlugin;
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.cacheddata.CachedMetaData;
+import net.luckperms.api.event.EventSubscription;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the LuckPerms prefix and suffix of online players for %LP_prefix% and %LP_suffix%.
+ * The meta is read when a player joins and updated from LuckPerms' UserDataRecalculateEvent,
+ * so rendering a status never asks LuckPerms. A display name is only marked dirty when the meta really changed.
+ */
+public class LuckPermsMetaCache {
+    private final StatusPlugin plugin;
+    private final StatusManager statusManager;
+    private final Map<UUID, Meta> metas = new ConcurrentHashMap<>();
+    private final AtomicLong recalculations = new AtomicLong();
+    private final AtomicLong changes = new AtomicLong();
+    private LuckPerms luckPerms;
+    private EventSubscription<UserDataRecalculateEvent> subscription;
+
+    private static final class Meta {
+        final String prefix;
+        final String suffix;
+
+        Meta(CachedMetaData metaData) {
+            this.prefix = metaData.getPrefix();
+            this.suffix = metaData.getSuffix();
+        }
+
+        boolean sameAs(Meta other) {
+            return Objects.equals(prefix, other.prefix) && Objects.equals(suffix, other.suffix);
+        }
+    }
+
+    /**
+     * Constructor for the LuckPermsMetaCache class.
+     *
+     * @param plugin        The StatusPlugin instance.
+     * @param statusManager The StatusManager used to render display names again.
+     */
+    public LuckPermsMetaCache(StatusPlugin plugin, StatusManager statusManager) {
+        this.plugin = plugin;
+        this.statusManager = statusManager;
+    }
+
+    /**
+     * Starts listening to meta changes and reads the meta of the players that are already online.
+     *
+     * @param luckPerms The LuckPerms API.
+     */
+    public void subscribe(LuckPerms luckPerms) {
+        this.luckPerms = luckPerms;
+        this.subscription = luckPerms.getEventBus().subscribe(plugin, UserDataRecalculateEvent.class, this::onDataRecalculate);
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            load(player);
+        }
+    }
+
+    /**
+     * Reads the meta of a player that joined.
+     *
+     * @param player The player.
+     */
+    public void load(Player player) {
+        if (luckPerms != null) {
+            metas.put(player.getUniqueId(), read(player));
+        }
+    }
+
+    /**
+     * Returns the LuckPerms prefix of a player.
+     *
+     * @param player The player.
+     * @return The prefix, empty if the player has none.
+     */
+    public String getPrefix(Player player) {
+        String prefix = get(player).prefix;
+        return prefix != null ? prefix : "";
+    }
+
+    /**
+     * Returns the LuckPerms suffix of a player.
+     *
+     * @param player The player.
+     * @return The suffix, empty if the player has none.
+     */
+    public String getSuffix(Player player) {
+        String suffix = get(player).suffix;
+        return suffix != null ? suffix : "";
+    }
+
+    /**
+     * Forgets the meta of a player that left.
+     *
+     * @param uuid The player's UUID.
+     */
+    public void invalidate(UUID uuid) {
+        metas.remove(uuid);
+    }
+
+    /**
+     * Stops listening to LuckPerms, called when the plugin is disabled.
+     */
+    public void close() {
+        if (subscription != null) {
+            subscription.close();
+            subscription = null;
+        }
+    }
+
+    /**
+     * Returns meta cache statistics shown in /tsp info.
+     *
+     * @return The number of players, recalculations and meta changes.
+     */
+    public String getStatistics() {
+        return metas.size() + " players, " + recalculations.get() + " recalculations, " + changes.get() + " changes";
+    }
+
+    private Meta get(Player player) {
+        Meta meta = metas.get(player.getUniqueId());
+        if (meta == null) {
+            // Rendered before the join was handled. A value stored by a recalculation meanwhile is newer than this read
+            Meta read = read(player);
+            Meta existing = metas.putIfAbsent(player.getUniqueId(), read);
+            meta = existing != null ? existing : read;
+        }
+        return meta;
+    }
+
+    private Meta read(Player player) {
+        return new Meta(luckPerms.getPlayerAdapter(Player.class).getUser(player).getCachedData().getMetaData());
+    }
+
+    /**
+     * Called by LuckPerms, usually off the main thread, whenever the cached data of a user was calculated again.
+     */
+    private void onDataRecalculate(UserDataRecalculateEvent event) {
+        recalculations.incrementAndGet();
+        UUID uuid = event.getUser().getUniqueId();
+        Meta old = metas.get(uuid);
+        if (old == null) {
+            // Not online, the meta is read when the player joins
+            return;
+        }
+        Meta meta = new Meta(event.getData().getMetaData());
+        // Skips the update if the player left in the meantime
+        if (meta.sameAs(old) || !metas.replace(uuid, old, meta)) {
+            return;
+        }
+        changes.incrementAndGet();
+        plugin.getFilteredLogger().debug("LuckPerms meta of {} changed", event.getUser().getUsername());
+        statusManager.markDirty(uuid);
+    }
+}
@@ -0,0 +1,165 @@
+package de.tubyoub.statusplugin.render;
+
+import de.tubyoub.statusplugin.Managers.StatusManager;
+import de.tubyoub.statusplugin.StatusPlugin;
+import de.tubyoub.utils.ColourUtils;
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.event.EventSubscription;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the permissions that change how a status is rendered as one bitmask per online player,
+ * so translating a status or a chat message is a bit test instead of up to seven permission lookups.
+ * The mask is read when a player joins, after LuckPerms calculated the permissions of a player again
+ * and after /tsp reload.
+ */
+public class PermissionCache {
+    /** Above the formatting bits of ColourUtils, set if the player may use placeholders in the tablist. */
+    public static final int PLACEHOLDERS = 1 << 6;
+
+    private final StatusPlugin plugin;
+    private final StatusManager statusManager;
+    private final Map<UUID, Integer> masks = new ConcurrentHashMap<>();
+    // Players with a recalculation waiting for the main thread, LuckPerms often sends several at once
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicLong recalculations = new AtomicLong();
+    private EventSubscription<UserDataRecalculateEvent> subscription;
+
+    /**
+     * Constructor for the PermissionCache class.
+     *
+     * @param plugin        The StatusPlugin instance.
+     * @param statusManager The StatusManager used to render display names again.
+     */
+    public PermissionCache(StatusPlugin plugin, StatusManager statusManager) {
+        this.plugin = plugin;
+        this.statusManager = statusManager;
+    }
+
+    /**
+     * Starts reading the masks again whenever LuckPerms calculated the permissions of a player again.
+     *
+     * @param luckPerms The LuckPerms API.
+     */
+    public void subscribe(LuckPerms luckPerms) {
+        this.subscription = luckPerms.getEventBus().subscribe(plugin, UserDataRecalculateEvent.class, this::onDataRecalculate);
+    }
+
+    /**
+     * Returns the permission mask of a player, reading it if it is not cached.
+     *
+     * @param player The player.
+     * @return The formatting bits of ColourUtils plus {@link #PLACEHOLDERS}.
+     */
+    public int get(Player player) {
+        Integer mask = masks.get(player.getUniqueId());
+        if (mask == null) {
+            mask = read(player);
+            masks.put(player.getUniqueId(), mask);
+        }
+        return mask;
+    }
+
+    /**
+     * Reads the mask of a player again.
+     *
+     * @param player The player.
+     * @return true if the mask changed.
+     */
+    public boolean refresh(Player player) {
+        int mask = read(player);
+        Integer old = masks.put(player.getUniqueId(), mask);
+        return old != null && old != mask;
+    }
+
+    /**
+     * Forgets the mask of a player that left.
+     *
+     * @param uuid The player's UUID.
+     */
+    public void invalidate(UUID uuid) {
+        masks.remove(uuid);
+    }
+
+    /**
+     * Forgets all masks, they are read again on the next render.
+     */
+    public void clear() {
+        masks.clear();
+    }
+
+    /**
+     * Stops listening to LuckPerms, called when the plugin is disabled.
+     */
+    public void close() {
+        if (subscription != null) {
+            subscription.close();
+            subscription = null;
+        }
+    }
+
+    /**
+     * Returns permission cache statistics shown in /tsp info.
+     *
+     * @return The number of players and recalculations.
+     */
+    public String getStatistics() {
+        return masks.size() + " players, " + recalculations.get() + " recalculations";
+    }
+
+    /**
+     * Collects the permissions of a player into a mask.
+     * Formatting codes also need the color permission, so without it no formatting bit is set.
+     */
+    private int read(Player player) {
+        int mask = player.hasPermission("StatusPlugin.placeholders") ? PLACEHOLDERS : 0;
+        if (!player.hasPermission("StatusPlugin.formatting.color")) {
+            return mask;
+        }
+        mask |= ColourUtils.ALLOW_COLOR;
+        if (player.hasPermission("StatusPlugin.formatting.bold")) {
+            mask |= ColourUtils.ALLOW_BOLD;
+        }
+        if (player.hasPermission("StatusPlugin.formatting.magic")) {
+            mask |= ColourUtils.ALLOW_MAGIC;
+        }
+        if (player.hasPermission("StatusPlugin.formatting.underline")) {
+            mask |= ColourUtils.ALLOW_UNDERLINE;
+        }
+        if (player.hasPermission("StatusPlugin.formatting.strikethrough")) {
+            mask |= ColourUtils.ALLOW_STRIKETHROUGH;
+        }
+        if (player.hasPermission("StatusPlugin.formatting.italic")) {
+            mask |= ColourUtils.ALLOW_ITALIC;
+        }
+        return mask;
+    }
+
+    /**
+     * Called by LuckPerms, usually off the main thread. Bukkit permissions are only checked on the main thread,
+     * where the display name is marked dirty if the mask changed.
+     */
+    private void onDataRecalculate(UserDataRecalculateEvent event) {
+        UUID uuid = event.getUser().getUniqueId();
+        if (!masks.containsKey(uuid) || !pending.add(uuid)) {
+            return;
+        }
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            pending.remove(uuid);
+            recalculations.incrementAndGet();
+            Player player = Bukkit.getPlayer(uuid);
+            if (player != null && masks.containsKey(uuid) && refresh(player)) {
+                plugin.getFilteredLogger().debug("Formatting permissions of {} changed", player.getName());
+                statusManager.markDirty(uuid);
+            }
+        });
+    }
+}
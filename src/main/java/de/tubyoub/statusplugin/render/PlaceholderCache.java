@@ -0,0 +1,142 @@
+package de.tubyoub.statusplugin.render;
+
+import de.tubyoub.statusplugin.Managers.ConfigManager;
+import de.tubyoub.statusplugin.StatusPlugin;
+import me.clip.placeholderapi.PlaceholderAPI;
+import org.bukkit.entity.Player;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the values PlaceholderAPI returned for the placeholders in statuses, per player.
+ * A value is reused until the cache time configured for its expansion under placeholders.identifiers
+ * (or placeholders.cacheSeconds) has passed, so slow placeholders are not resolved on every render and chat message.
+ */
+public class PlaceholderCache {
+    // Expired values are only dropped once a player has this many, a status rarely has more than a few placeholders
+    private static final int PRUNE_THRESHOLD = 32;
+    // Players can put any identifier into their status, statistics beyond this many expansions are counted together
+    private static final int MAX_COUNTERS = 64;
+    private static final String OTHER_IDENTIFIERS = "other";
+
+    private final ConfigManager configManager;
+    private final Map<UUID, Map<String, Value>> values = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    private static final class Value {
+        final String text;
+        final long expires;
+
+        Value(String text, long expires) {
+            this.text = text;
+            this.expires = expires;
+        }
+    }
+
+    private static final class Counter {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+    }
+
+    /**
+     * Constructor for the PlaceholderCache class.
+     *
+     * @param plugin The StatusPlugin instance.
+     */
+    public PlaceholderCache(StatusPlugin plugin) {
+        this.configManager = plugin.getConfigManager();
+    }
+
+    /**
+     * Returns the value of a single placeholder for a player, asking PlaceholderAPI only if there is no valid cached value.
+     *
+     * @param player      The player the placeholder is resolved for.
+     * @param placeholder The placeholder including its percent signs.
+     * @return The value, or the placeholder itself if PlaceholderAPI does not know it.
+     */
+    public String resolve(Player player, String placeholder) {
+        String identifier = getIdentifier(placeholder);
+        Counter counter = getCounter(identifier);
+        long cacheMillis = configManager.getPlaceholderCacheMillis(identifier);
+        if (cacheMillis <= 0) {
+            counter.misses.increment();
+            return PlaceholderAPI.setPlaceholders(player, placeholder);
+        }
+        Map<String, Value> playerValues = values.computeIfAbsent(player.getUniqueId(), key -> new ConcurrentHashMap<>());
+        long now = System.currentTimeMillis();
+        Value value = playerValues.get(placeholder);
+        if (value != null && value.expires > now) {
+            counter.hits.increment();
+            return value.text;
+        }
+        counter.misses.increment();
+        if (playerValues.size() >= PRUNE_THRESHOLD) {
+            // Placeholders of statuses the player had before
+            playerValues.values().removeIf(old -> old.expires <= now);
+        }
+        String text = PlaceholderAPI.setPlaceholders(player, placeholder);
+        playerValues.put(placeholder, new Value(text, now + cacheMillis));
+        return text;
+    }
+
+    /**
+     * Forgets the cached values of a player, called when they leave.
+     *
+     * @param uuid The player's UUID.
+     */
+    public void invalidate(UUID uuid) {
+        values.remove(uuid);
+    }
+
+    /**
+     * Forgets all cached values, called when the config is reloaded since the cache times may have changed.
+     */
+    public void clear() {
+        values.clear();
+    }
+
+    /**
+     * Returns the hits and misses per expansion, shown in /tsp info.
+     *
+     * @return The statistics by identifier, sorted by identifier.
+     */
+    public Map<String, String> getStatistics() {
+        Map<String, String> statistics = new LinkedHashMap<>();
+        for (Map.Entry<String, Counter> entry : new TreeMap<>(counters).entrySet()) {
+            long cacheMillis = configManager.getPlaceholderCacheMillis(entry.getKey());
+            statistics.put("Placeholders %" + entry.getKey() + "_%", entry.getValue().hits.sum() + " hits, "
+                    + entry.getValue().misses.sum() + " misses, cached " + (cacheMillis / 1000) + "s");
+        }
+        return statistics;
+    }
+
+    private Counter getCounter(String identifier) {
+        Counter counter = counters.get(identifier);
+        if (counter != null) {
+            return counter;
+        }
+        if (counters.size() >= MAX_COUNTERS) {
+            identifier = OTHER_IDENTIFIERS;
+        }
+        return counters.computeIfAbsent(identifier, key -> new Counter());
+    }
+
+    /**
+     * Returns the expansion identifier of a placeholder, the part between the first percent sign and the first underscore.
+     *
+     * @param placeholder The placeholder including its percent signs.
+     * @return The lower case identifier.
+     */
+    static String getIdentifier(String placeholder) {
+        int end = placeholder.indexOf('_');
+        if (end < 0) {
+            end = placeholder.length() - 1;
+        }
+        return placeholder.substring(1, end).toLowerCase();
+    }
+}
@@ -0,0 +1,47 @@
+package de.tubyoub.statusplugin.render;
+
+import de.tubyoub.statusplugin.model.StatusText;
+import org.bukkit.entity.Player;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Everything needed to render the display name of a player, taken on the main thread
+ * so the name itself can be rendered on a worker thread. Immutable.
+ */
+public final class RenderSnapshot {
+    // Only used for placeholders of expansions listed under placeholders.threadSafe and for LuckPerms meta
+    final Player player;
+    final UUID uuid;
+    final String name;
+    final StatusText text;
+    final int permissions;
+    final int generation;
+    // PlaceholderAPI values that had to be resolved on the main thread
+    final Map<String, String> values;
+
+    RenderSnapshot(Player player, StatusText text, int permissions, int generation, Map<String, String> values) {
+        this.player = player;
+        this.uuid = player.getUniqueId();
+        this.name = player.getName();
+        this.text = text;
+        this.permissions = permissions;
+        this.generation = generation;
+        this.values = values.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(values);
+    }
+
+    public UUID getUniqueId() {
+        return uuid;
+    }
+
+    /**
+     * Returns the status the snapshot was taken of.
+     *
+     * @return The parsed status.
+     */
+    public StatusText getText() {
+        return text;
+    }
+}
@@ -0,0 +1,358 @@
+package de.tubyoub.statusplugin.render;
+
+import de.tubyoub.statusplugin.Managers.ConfigManager;
+import de.tubyoub.statusplugin.Managers.StatusManager;
+import de.tubyoub.statusplugin.StatusPlugin;
+import de.tubyoub.statusplugin.model.StatusText;
+import de.tubyoub.utils.ColourUtils;
+import de.tubyoub.utils.MiniMessageTemplates;
+import me.clip.placeholderapi.PlaceholderAPI;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Renders the display names and chat prefixes of players and caches the results.
+ * A cached render is reused as long as the status text, the formatting permissions of the player
+ * and the config generation stay the same, so refreshes and chat messages are a map lookup.
+ * Statuses with placeholders keep their translated text cached and only resolve the placeholders again,
+ * static statuses are never passed to PlaceholderAPI or LuckPerms.
+ * Display names can be rendered off the main thread from a {@link RenderSnapshot}, chat prefixes are rendered
+ * on the thread of the chat event.
+ */
+public class StatusRenderer {
+    private final StatusPlugin plugin;
+    private final StatusManager statusManager;
+    private final ConfigManager configManager;
+    private final PlaceholderCache placeholderCache;
+    private final LuckPermsMetaCache luckPermsMeta;
+    private final ViewerChatRenderer viewerChat;
+    private final Map<UUID, Render> renders = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * A render of one status, valid for the permissions and config generation it was made with.
+     */
+    private static final class Render {
+        final StatusText text;
+        final int permissions;
+        final int generation;
+        // Status with translated colours, placeholders not resolved yet
+        final String translated;
+        // Null if placeholders have to be resolved on every render
+        final String namePrefix;
+        final String chatPrefix;
+        // The translated status split at its placeholders, null if it has none
+        final Template template;
+
+        Render(StatusText text, int permissions, int generation, String translated,
+               String namePrefix, String chatPrefix) {
+            this.text = text;
+            this.permissions = permissions;
+            this.generation = generation;
+            this.translated = translated;
+            this.namePrefix = namePrefix;
+            this.chatPrefix = chatPrefix;
+            this.template = namePrefix == null || chatPrefix == null
+                    ? Template.of(text.translateSegments(permissions & ColourUtils.ALLOW_ALL)) : null;
+        }
+    }
+
+    /**
+     * A translated status split into the text around its placeholders, {@code literals} has one more element.
+     */
+    private static final class Template {
+        final String[] literals;
+        final String[] placeholders;
+
+        Template(String[] literals, String[] placeholders) {
+            this.literals = literals;
+            this.placeholders = placeholders;
+        }
+
+        /**
+         * Builds the template from {@link StatusText#translateSegments(int)}, which splits at the placeholder tokens
+         * of the parsed status, so codes a gradient put between characters never end up inside a placeholder.
+         */
+        static Template of(List<String> segments) {
+            int count = segments.size() / 2;
+            String[] literals = new String[count + 1];
+            String[] placeholders = new String[count];
+            for (int i = 0; i < count; i++) {
+                literals[i] = segments.get(2 * i);
+                placeholders[i] = segments.get(2 * i + 1);
+            }
+            literals[count] = segments.get(2 * count);
+            return new Template(literals, placeholders);
+        }
+    }
+
+    /**
+     * Constructor for the StatusRenderer class.
+     *
+     * @param plugin        The StatusPlugin instance.
+     * @param statusManager The StatusManager holding the statuses.
+     */
+    public StatusRenderer(StatusPlugin plugin, StatusManager statusManager) {
+        this.plugin = plugin;
+        this.statusManager = statusManager;
+        this.configManager = plugin.getConfigManager();
+        this.placeholderCache = new PlaceholderCache(plugin);
+        this.luckPermsMeta = new LuckPermsMetaCache(plugin, statusManager);
+        this.viewerChat = new ViewerChatRenderer(plugin, this, statusManager);
+    }
+
+    /**
+     * Returns the display name of a player, with their status in front of the name.
+     *
+     * @param player The player.
+     * @return The display name, the plain name if the player has no status.
+     */
+    public String getDisplayName(Player player) {
+        return getDisplayName(snapshot(player));
+    }
+
+    /**
+     * Takes everything needed to render the display name of a player. Must be called on the main thread.
+     * PlaceholderAPI placeholders of expansions that are not listed under placeholders.threadSafe are resolved here.
+     *
+     * @param player The player.
+     * @return The snapshot to pass to {@link #getDisplayName(RenderSnapshot)}.
+     */
+    public RenderSnapshot snapshot(Player player) {
+        StatusText text = statusManager.getStatusText(player);
+        int permissions = statusManager.getPermissionCache().get(player);
+        Map<String, String> values = new HashMap<>(0);
+        if (text.usesPlaceholderAPI() && isDynamicDisplayName(text, permissions)) {
+            for (String placeholder : text.getPlaceholders()) {
+                if (!isLuckPermsPlaceholder(placeholder)
+                        && !configManager.isPlaceholderThreadSafe(PlaceholderCache.getIdentifier(placeholder))) {
+                    values.put(placeholder, placeholderCache.resolve(player, placeholder));
+                }
+            }
+        }
+        return new RenderSnapshot(player, text, permissions, configManager.getGeneration(), values);
+    }
+
+    /**
+     * Renders a display name from a snapshot. Safe to call from any thread.
+     *
+     * @param snapshot The snapshot taken on the main thread.
+     * @return The display name, the plain name if the player has no status.
+     */
+    public String getDisplayName(RenderSnapshot snapshot) {
+        return toDisplayName(snapshot.name, getNamePrefix(snapshot));
+    }
+
+    /**
+     * Renders the part of the display name in front of the player name from a snapshot, used as team prefix
+     * in tablist mode teams. Safe to call from any thread.
+     *
+     * @param snapshot The snapshot taken on the main thread.
+     * @return The status in brackets followed by a space, empty if the player has no status.
+     */
+    public String getNamePrefix(RenderSnapshot snapshot) {
+        Render render = render(snapshot.uuid, snapshot.text, snapshot.permissions, snapshot.generation);
+        if (render.namePrefix != null) {
+            return render.namePrefix;
+        }
+        return formatNamePrefix(resolve(snapshot.player, render.template, true, snapshot.values));
+    }
+
+    /**
+     * Puts a name prefix and the player name together.
+     *
+     * @param name   The player name.
+     * @param prefix The prefix from {@link #getNamePrefix(RenderSnapshot)}.
+     * @return The display name, the plain name if the prefix is empty.
+     */
+    public static String toDisplayName(String name, String prefix) {
+        return prefix.isEmpty() ? name : prefix + ChatColor.WHITE + name;
+    }
+
+    /**
+     * Returns the status of a player as it is shown in front of their chat messages.
+     *
+     * @param player The player.
+     * @return The chat prefix including the trailing space, empty if the player has no status.
+     */
+    public String getChatPrefix(Player player) {
+        Render render = render(player.getUniqueId(), statusManager.getStatusText(player),
+                statusManager.getPermissionCache().get(player), configManager.getGeneration());
+        if (render.chatPrefix != null) {
+            return render.chatPrefix;
+        }
+        // LuckPerms placeholders were never resolved in chat
+        return formatChatPrefix(resolve(player, render.template, false, null));
+    }
+
+    /**
+     * Returns the status of a player as one reader sees it in front of their chat messages,
+     * with PlaceholderAPI relational placeholders resolved between the player and the reader.
+     * Must be called on the main thread.
+     *
+     * @param player The player sending the message.
+     * @param viewer The player reading the message.
+     * @return The chat prefix including the trailing space, empty if the player has no status.
+     */
+    public String getChatPrefix(Player player, Player viewer) {
+        Render render = render(player.getUniqueId(), statusManager.getStatusText(player),
+                statusManager.getPermissionCache().get(player), configManager.getGeneration());
+        if (render.template == null || !plugin.isPlaceholderAPIPresent()) {
+            return render.chatPrefix;
+        }
+        String status = resolve(player, render.template, false, null);
+        return formatChatPrefix(PlaceholderAPI.setRelationalPlaceholders(player, viewer, status));
+    }
+
+    /**
+     * Forgets the render of a player, called when they leave.
+     *
+     * @param uuid The player's UUID.
+     */
+    public void invalidate(UUID uuid) {
+        renders.remove(uuid);
+        placeholderCache.invalidate(uuid);
+        luckPermsMeta.invalidate(uuid);
+        viewerChat.invalidate(uuid);
+    }
+
+    /**
+     * Returns the cache of PlaceholderAPI values.
+     *
+     * @return The PlaceholderCache instance.
+     */
+    public PlaceholderCache getPlaceholderCache() {
+        return placeholderCache;
+    }
+
+    /**
+     * Returns the cache of LuckPerms prefixes and suffixes.
+     *
+     * @return The LuckPermsMetaCache instance.
+     */
+    public LuckPermsMetaCache getLuckPermsMeta() {
+        return luckPermsMeta;
+    }
+
+    /**
+     * Returns the renderer of chat messages whose status depends on the reader.
+     *
+     * @return The ViewerChatRenderer instance.
+     */
+    public ViewerChatRenderer getViewerChat() {
+        return viewerChat;
+    }
+
+    /**
+     * Returns render cache statistics shown in /tsp info.
+     *
+     * @return The statistics by name.
+     */
+    public Map<String, String> getStatistics() {
+        Map<String, String> statistics = new LinkedHashMap<>();
+        statistics.put("Render cache", renders.size() + " players, " + hits.get() + " hits, " + misses.get() + " misses");
+        statistics.put("MiniMessage templates", MiniMessageTemplates.getStatistics());
+        statistics.put("Permission masks", statusManager.getPermissionCache().getStatistics());
+        if (plugin.isLuckPermsPresent()) {
+            statistics.put("LuckPerms meta", luckPermsMeta.getStatistics());
+        }
+        if (plugin.isPlaceholderAPIPresent()) {
+            statistics.put("Per-viewer chat", viewerChat.getStatistics());
+        }
+        statistics.putAll(placeholderCache.getStatistics());
+        return statistics;
+    }
+
+    private Render render(UUID uuid, StatusText text, int permissions, int generation) {
+        Render render = renders.get(uuid);
+        if (render != null && render.generation == generation && render.permissions == permissions
+                && render.text.getRaw().equals(text.getRaw())) {
+            hits.incrementAndGet();
+            return render;
+        }
+        misses.incrementAndGet();
+        render = createRender(text, permissions, generation);
+        renders.put(uuid, render);
+        return render;
+    }
+
+    private Render createRender(StatusText text, int permissions, int generation) {
+        if (text.isEmpty()) {
+            return new Render(text, permissions, generation, "", "", "");
+        }
+        String translated = text.translate(permissions & ColourUtils.ALLOW_ALL);
+        // Chat resolves placeholders without asking for the placeholders permission, but only through PlaceholderAPI
+        boolean dynamicChatPrefix = text.usesPlaceholderAPI() && plugin.isPlaceholderAPIPresent();
+        return new Render(text, permissions, generation, translated,
+                isDynamicDisplayName(text, permissions) ? null : formatNamePrefix(translated),
+                dynamicChatPrefix ? null : formatChatPrefix(translated));
+    }
+
+    /**
+     * Tells whether the placeholders of a status have to be resolved for every display name.
+     * Static statuses never reach PlaceholderAPI or LuckPerms.
+     */
+    private boolean isDynamicDisplayName(StatusText text, int permissions) {
+        boolean resolvable = (text.usesPlaceholderAPI() && plugin.isPlaceholderAPIPresent())
+                || (text.usesLuckPerms() && plugin.isLuckPermsPresent());
+        return resolvable && (permissions & PermissionCache.PLACEHOLDERS) != 0;
+    }
+
+    private static boolean isLuckPermsPlaceholder(String placeholder) {
+        return placeholder.equals(StatusText.LUCKPERMS_PREFIX) || placeholder.equals(StatusText.LUCKPERMS_SUFFIX);
+    }
+
+    /**
+     * Fills in the placeholders of a split status, PlaceholderAPI values come from the {@link PlaceholderCache}
+     * and LuckPerms prefixes and suffixes from the {@link LuckPermsMetaCache}.
+     * With values from a snapshot, only placeholders of thread safe expansions are resolved here,
+     * others that are missing stay as they are.
+     */
+    private String resolve(Player player, Template template, boolean luckPerms, Map<String, String> values) {
+        StringBuilder builder = new StringBuilder(64);
+        for (int i = 0; i < template.placeholders.length; i++) {
+            builder.append(template.literals[i]);
+            String placeholder = template.placeholders[i];
+            if (isLuckPermsPlaceholder(placeholder)) {
+                if (luckPerms && plugin.isLuckPermsPresent()) {
+                    builder.append(placeholder.equals(StatusText.LUCKPERMS_PREFIX)
+                            ? luckPermsMeta.getPrefix(player) : luckPermsMeta.getSuffix(player));
+                } else {
+                    builder.append(placeholder);
+                }
+            } else if (!plugin.isPlaceholderAPIPresent()) {
+                builder.append(placeholder);
+            } else if (values != null && values.containsKey(placeholder)) {
+                builder.append(values.get(placeholder));
+            } else if (values == null || configManager.isPlaceholderThreadSafe(PlaceholderCache.getIdentifier(placeholder))) {
+                builder.append(placeholderCache.resolve(player, placeholder));
+            } else {
+                builder.append(placeholder);
+            }
+        }
+        builder.append(template.literals[template.placeholders.length]);
+        return builder.toString();
+    }
+
+    private String formatNamePrefix(String status) {
+        return ColourUtils.format(configManager.getOpeningCharacter() + status + ChatColor.RESET
+                + configManager.getClosingCharacter() + " ");
+    }
+
+    private String formatChatPrefix(String status) {
+        if (status.isEmpty()) {
+            return "";
+        }
+        return configManager.getOpeningCharacter() + ColourUtils.format(status) + ChatColor.RESET
+                + configManager.getClosingCharacter() + " ";
+    }
+}
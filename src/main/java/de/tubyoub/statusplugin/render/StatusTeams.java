@@ -0,0 +1,165 @@
+package de.tubyoub.statusplugin.render;
+
+import de.tubyoub.statusplugin.StatusPlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+import org.bukkit.scoreboard.Scoreboard;
+import org.bukkit.scoreboard.Team;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Shows statuses as prefixes of scoreboard teams on the main scoreboard, used with tablist.mode teams.
+ * Players whose statuses render the same share one team, so a status group needs one team and one prefix.
+ * Membership is changed only for players whose status changed, and a team is removed as soon as its last
+ * player left it. At most tablist.maxTeams teams are created, players that would need another team are not
+ * put into a team. Must only be used on the main thread.
+ */
+public class StatusTeams {
+    private static final String TEAM_PREFIX = "tsp_";
+
+    private final StatusPlugin plugin;
+    private final Scoreboard scoreboard;
+    private final int maxTeams;
+    private final Map<String, Team> teamsByPrefix = new HashMap<>();
+    private final Map<UUID, Membership> memberships = new HashMap<>();
+    private int nextTeam;
+    private long created;
+    private long removed;
+    private long moves;
+    private long overLimit;
+
+    /**
+     * The team of a player, the prefix it was created for and the scoreboard entry the player was added as.
+     * The prefix is kept here since the server may return it differently from how it was set.
+     */
+    private static final class Membership {
+        final Team team;
+        final String prefix;
+        final String entry;
+
+        Membership(Team team, String prefix, String entry) {
+            this.team = team;
+            this.prefix = prefix;
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * Constructor for the StatusTeams class.
+     * Removes the teams left on the main scoreboard by an earlier run that did not shut down cleanly.
+     *
+     * @param plugin The StatusPlugin instance.
+     */
+    public StatusTeams(StatusPlugin plugin) {
+        this.plugin = plugin;
+        this.scoreboard = Bukkit.getScoreboardManager().getMainScoreboard();
+        this.maxTeams = plugin.getConfigManager().getTablistMaxTeams();
+        for (Team team : new ArrayList<>(scoreboard.getTeams())) {
+            if (team.getName().startsWith(TEAM_PREFIX)) {
+                team.unregister();
+            }
+        }
+    }
+
+    /**
+     * Puts a player into the team of their rendered status.
+     *
+     * @param player The player.
+     * @param prefix The rendered status in front of the name, empty to take the player out of their team.
+     * @return false if the player could not be put into a team because the team limit was reached
+     * or the prefix is too long for a team.
+     */
+    public boolean assign(Player player, String prefix) {
+        Membership membership = memberships.get(player.getUniqueId());
+        if (membership != null && prefix.equals(membership.prefix)) {
+            return true;
+        }
+        leave(player.getUniqueId());
+        if (prefix.isEmpty()) {
+            return true;
+        }
+        Team team = teamsByPrefix.get(prefix);
+        if (team == null) {
+            if (teamsByPrefix.size() >= maxTeams) {
+                overLimit++;
+                return false;
+            }
+            team = createTeam(prefix);
+            if (team == null) {
+                return false;
+            }
+        }
+        team.addEntry(player.getName());
+        memberships.put(player.getUniqueId(), new Membership(team, prefix, player.getName()));
+        moves++;
+        return true;
+    }
+
+    /**
+     * Takes a player out of their team, removing the team if it is empty then.
+     *
+     * @param uuid The player's UUID.
+     */
+    public void leave(UUID uuid) {
+        Membership membership = memberships.remove(uuid);
+        if (membership == null) {
+            return;
+        }
+        membership.team.removeEntry(membership.entry);
+        if (membership.team.getSize() == 0) {
+            teamsByPrefix.remove(membership.prefix);
+            membership.team.unregister();
+            removed++;
+        }
+    }
+
+    /**
+     * Removes all teams of the plugin, called when the plugin is disabled.
+     */
+    public void close() {
+        for (Team team : teamsByPrefix.values()) {
+            team.unregister();
+        }
+        teamsByPrefix.clear();
+        memberships.clear();
+    }
+
+    /**
+     * Returns team statistics shown in /tsp info.
+     *
+     * @return The statistics by name.
+     */
+    public Map<String, String> getStatistics() {
+        Map<String, String> statistics = new LinkedHashMap<>();
+        statistics.put("Status teams", teamsByPrefix.size() + " of " + maxTeams + " teams, " + memberships.size()
+                + " players, " + created + " created, " + removed + " removed");
+        statistics.put("Status team changes", moves + " players moved, " + overLimit + " over the team limit");
+        return statistics;
+    }
+
+    private Team createTeam(String prefix) {
+        String name;
+        do {
+            name = TEAM_PREFIX + Integer.toString(nextTeam++, 36);
+        } while (scoreboard.getTeam(name) != null);
+        Team team = scoreboard.registerNewTeam(name);
+        try {
+            team.setPrefix(prefix);
+        } catch (IllegalArgumentException e) {
+            // Older servers limit the length of team prefixes
+            plugin.getFilteredLogger().debug("Status prefix '{}' is too long for a team: {}", prefix, e.getMessage());
+            team.unregister();
+            return null;
+        }
+        team.setColor(ChatColor.WHITE);
+        teamsByPrefix.put(prefix, team);
+        created++;
+        return team;
+    }
+}
@@ -0,0 +1,159 @@
+package de.tubyoub.statusplugin.render;
+
+import de.tubyoub.statusplugin.Managers.ConfigManager;
+import de.tubyoub.statusplugin.Managers.StatusManager;
+import de.tubyoub.statusplugin.StatusPlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Sends chat messages of players whose status has PlaceholderAPI relational placeholders (%rel_...%)
+ * to every reader separately, with the relational placeholders resolved between the player and the reader.
+ * The rendered status is cached by the status the player has for everyone and the class of the reader,
+ * which is the value of chatViewerClass for the reader or the reader themself if it is empty,
+ * so a message to many readers costs one render per class and a map lookup per reader.
+ * Must only be used on the main thread.
+ */
+public class ViewerChatRenderer {
+    private static final String RELATIONAL_IDENTIFIER = "rel";
+
+    private final StatusPlugin plugin;
+    private final StatusRenderer statusRenderer;
+    private final StatusManager statusManager;
+    private final ConfigManager configManager;
+    private final Map<UUID, OwnerPrefixes> prefixes = new HashMap<>();
+    private long messages;
+    private long hits;
+    private long misses;
+
+    /**
+     * The statuses of one player as the reader classes see them, valid while the status for everyone stays the same.
+     */
+    private static final class OwnerPrefixes {
+        final String chatPrefix;
+        final Map<String, Value> byClass = new HashMap<>();
+
+        OwnerPrefixes(String chatPrefix) {
+            this.chatPrefix = chatPrefix;
+        }
+    }
+
+    private static final class Value {
+        final String prefix;
+        final long expires;
+
+        Value(String prefix, long expires) {
+            this.prefix = prefix;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * Constructor for the ViewerChatRenderer class.
+     *
+     * @param plugin         The StatusPlugin instance.
+     * @param statusRenderer The StatusRenderer rendering the statuses.
+     * @param statusManager  The StatusManager holding the statuses.
+     */
+    public ViewerChatRenderer(StatusPlugin plugin, StatusRenderer statusRenderer, StatusManager statusManager) {
+        this.plugin = plugin;
+        this.statusRenderer = statusRenderer;
+        this.statusManager = statusManager;
+        this.configManager = plugin.getConfigManager();
+    }
+
+    /**
+     * Returns whether the chat messages of a player have to be rendered for every reader.
+     *
+     * @param player The player sending a message.
+     * @return true if chatPerViewer is enabled and the status of the player has relational placeholders.
+     */
+    public boolean isViewerDependent(Player player) {
+        return configManager.isChatPerViewer() && plugin.isPlaceholderAPIPresent()
+                && statusManager.getStatusText(player).usesRelationalPlaceholders();
+    }
+
+    /**
+     * Sends a chat message to all online players and the console, each with the status as they see it in front.
+     *
+     * @param player  The player sending the message.
+     * @param message The formatted message after the status, starting with the player name.
+     */
+    public void send(Player player, String message) {
+        String chatPrefix = statusRenderer.getChatPrefix(player);
+        OwnerPrefixes owner = prefixes.get(player.getUniqueId());
+        if (owner == null || !owner.chatPrefix.equals(chatPrefix)) {
+            owner = new OwnerPrefixes(chatPrefix);
+            prefixes.put(player.getUniqueId(), owner);
+        }
+        long now = System.currentTimeMillis();
+        long cacheMillis = configManager.getPlaceholderCacheMillis(RELATIONAL_IDENTIFIER);
+        for (Player viewer : Bukkit.getOnlinePlayers()) {
+            viewer.sendMessage(getPrefix(owner, player, viewer, now, cacheMillis) + message);
+        }
+        // The console reads the message as the player sees it
+        Bukkit.getConsoleSender().sendMessage(getPrefix(owner, player, player, now, cacheMillis) + message);
+        messages++;
+    }
+
+    /**
+     * Forgets the statuses of a player that left and the statuses rendered for them as reader.
+     *
+     * @param uuid The player's UUID.
+     */
+    public void invalidate(UUID uuid) {
+        prefixes.remove(uuid);
+        String viewerClass = uuid.toString();
+        for (OwnerPrefixes owner : prefixes.values()) {
+            owner.byClass.remove(viewerClass);
+        }
+    }
+
+    /**
+     * Forgets all rendered statuses, called after /tsp reload.
+     */
+    public void clear() {
+        prefixes.clear();
+    }
+
+    /**
+     * Returns per-viewer chat statistics shown in /tsp info.
+     *
+     * @return The number of players, messages and cache hits and misses.
+     */
+    public String getStatistics() {
+        return prefixes.size() + " players, " + messages + " messages, " + hits + " hits, " + misses + " misses";
+    }
+
+    private String getPrefix(OwnerPrefixes owner, Player player, Player viewer, long now, long cacheMillis) {
+        String viewerClass = getViewerClass(viewer);
+        Value value = owner.byClass.get(viewerClass);
+        if (value != null && value.expires > now) {
+            hits++;
+            return value.prefix;
+        }
+        misses++;
+        String prefix = statusRenderer.getChatPrefix(player, viewer);
+        if (cacheMillis > 0) {
+            owner.byClass.put(viewerClass, new Value(prefix, now + cacheMillis));
+        }
+        return prefix;
+    }
+
+    /**
+     * Readers with the same class are assumed to see the same status. Without chatViewerClass every reader
+     * is a class of their own, so statuses are still reused across messages until they expire.
+     */
+    private String getViewerClass(Player viewer) {
+        String placeholder = configManager.getChatViewerClass();
+        if (placeholder.isEmpty()) {
+            return viewer.getUniqueId().toString();
+        }
+        // Prefixed so a value can never be taken for the UUID of a reader
+        return "class:" + statusRenderer.getPlaceholderCache().resolve(viewer, placeholder);
+    }
+}
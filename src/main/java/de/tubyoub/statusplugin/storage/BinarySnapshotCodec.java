@@ -0,0 +1,127 @@
+package de.tubyoub.statusplugin.storage;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact binary snapshot, read through a memory mapped file so loading is a single linear scan.
+ * <p>
+ * Layout (big endian): magic {@code TSPS}, format version (int), entry count (int),
+ * then per entry the UUID as two longs, the status length (int) and the UTF-8 status bytes,
+ * followed by a CRC32 of everything before it (long). Version 1 files, which stored the length as an unsigned short,
+ * are still read.
+ */
+public class BinarySnapshotCodec implements SnapshotCodec {
+    private static final int MAGIC = 0x54535053;
+    private static final int VERSION = 2;
+    private static final int VERSION_SHORT_LENGTHS = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int CHECKSUM_SIZE = 8;
+    // Mapped files stay locked on Windows until the buffer is collected, which breaks the rename of the next save
+    private static final boolean MAP_FILES = !System.getProperty("os.name", "").startsWith("Windows");
+
+    @Override
+    public String getName() {
+        return "binary";
+    }
+
+    @Override
+    public String getFileName() {
+        return "statuses.bin";
+    }
+
+    @Override
+    public int read(File file, BiConsumer<UUID, String> consumer) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + CHECKSUM_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException(file.getName() + " has an invalid size of " + size + " bytes");
+            }
+            if (MAP_FILES) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        throw new IOException("Unexpected end of " + file.getName());
+                    }
+                }
+                buffer.flip();
+            }
+        }
+
+        int dataEnd = buffer.limit() - CHECKSUM_SIZE;
+        CRC32 crc = new CRC32();
+        ByteBuffer data = buffer.duplicate();
+        data.limit(dataEnd);
+        crc.update(data);
+        if (crc.getValue() != buffer.getLong(dataEnd)) {
+            throw new IOException(file.getName() + " is damaged, checksum mismatch");
+        }
+        // The checksum is not part of the records, a damaged length must not reach into it
+        buffer.limit(dataEnd);
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(file.getName() + " is not a status snapshot");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION && version != VERSION_SHORT_LENGTHS) {
+                throw new IOException(file.getName() + " has unsupported format version " + version);
+            }
+
+            int count = buffer.getInt();
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < count; i++) {
+                UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+                int length = version == VERSION_SHORT_LENGTHS ? Short.toUnsignedInt(buffer.getShort()) : buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new IOException(file.getName() + " has an invalid status length of " + length + " bytes");
+                }
+                if (bytes.length < length) {
+                    bytes = new byte[length];
+                }
+                buffer.get(bytes, 0, length);
+                consumer.accept(uuid, new String(bytes, 0, length, StandardCharsets.UTF_8));
+            }
+            return count;
+        } catch (BufferUnderflowException e) {
+            throw new IOException(file.getName() + " is damaged, it ends in the middle of a record");
+        }
+    }
+
+    @Override
+    public void write(File file, Map<UUID, String> statuses) throws IOException {
+        AtomicFiles.write(file.toPath(), out -> {
+            CRC32 crc = new CRC32();
+            DataOutputStream data = new DataOutputStream(new CheckedOutputStream(out, crc));
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(statuses.size());
+            for (Map.Entry<UUID, String> entry : statuses.entrySet()) {
+                byte[] status = entry.getValue().getBytes(StandardCharsets.UTF_8);
+                data.writeLong(entry.getKey().getMostSignificantBits());
+                data.writeLong(entry.getKey().getLeastSignificantBits());
+                data.writeInt(status.length);
+                data.write(status);
+            }
+            data.flush();
+            // The checksum itself is not part of the checked data
+            new DataOutputStream(out).writeLong(crc.getValue());
+        });
+    }
+}
@@ -0,0 +1,120 @@
+package de.tubyoub.statusplugin.storage;
+
+import de.tubyoub.statusplugin.StatusPlugin;
+import de.tubyoub.statusplugin.model.StatusChange;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Flat file backend: a snapshot (statuses.yml or statuses.bin) plus an append-only journal of the changes since.
+ * The journal is folded into the snapshot once it holds more than the configured number of records.
+ */
+public class FileStatusStore implements StatusStore {
+    private final StatusPlugin plugin;
+    private final SnapshotCodec codec;
+    private final File snapshotFile;
+    private final StatusJournal journal;
+    private final long compactThreshold;
+    private long compactionCount;
+
+    /**
+     * Constructor for the FileStatusStore class.
+     *
+     * @param plugin      The StatusPlugin instance.
+     * @param codec       The format of the snapshot file.
+     * @param journalFile The journal file.
+     */
+    public FileStatusStore(StatusPlugin plugin, SnapshotCodec codec, File journalFile) {
+        this.plugin = plugin;
+        this.codec = codec;
+        this.snapshotFile = new File(journalFile.getAbsoluteFile().getParentFile(), codec.getFileName());
+        this.journal = new StatusJournal(journalFile);
+        this.compactThreshold = Math.max(1, plugin.getConfigManager().getJournalCompactThreshold());
+    }
+
+    @Override
+    public String getName() {
+        return codec.getName();
+    }
+
+    @Override
+    public long loadAll(BiConsumer<UUID, String> consumer) throws IOException {
+        // The journal can remove entries again, so it has to be applied before handing anything out
+        Map<UUID, String> statuses = new HashMap<>();
+        codec.read(snapshotFile, statuses::put);
+        journal.replay(statuses, true);
+        statuses.forEach(consumer);
+        return statuses.size();
+    }
+
+    @Override
+    public void forEach(BiConsumer<UUID, String> consumer) throws IOException {
+        Map<UUID, String> statuses = new HashMap<>();
+        codec.read(snapshotFile, statuses::put);
+        journal.replay(statuses, false);
+        statuses.forEach(consumer);
+    }
+
+    /**
+     * Looks up a single status. The flat file format has no index,
+     * so this reads the whole snapshot and journal.
+     */
+    @Override
+    public String get(UUID uuid) throws IOException {
+        Map<UUID, String> statuses = new HashMap<>();
+        codec.read(snapshotFile, statuses::put);
+        journal.replay(statuses, false);
+        return statuses.get(uuid);
+    }
+
+    @Override
+    public void write(Collection<StatusChange> changes) throws IOException {
+        journal.append(changes);
+    }
+
+    @Override
+    public void clear() throws IOException {
+        codec.write(snapshotFile, Collections.emptyMap());
+        journal.truncate();
+    }
+
+    @Override
+    public void maintenance() throws IOException {
+        if (journal.getRecordCount() >= compactThreshold) {
+            compact();
+        }
+    }
+
+    @Override
+    public Map<String, String> getStatistics() {
+        Map<String, String> statistics = new LinkedHashMap<>();
+        statistics.put("Journal records", String.valueOf(journal.getRecordCount()));
+        statistics.put("Compactions", String.valueOf(compactionCount));
+        return statistics;
+    }
+
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    private void compact() throws IOException {
+        long start = System.nanoTime();
+        Map<UUID, String> statuses = new HashMap<>();
+        codec.read(snapshotFile, statuses::put);
+        journal.replay(statuses, false);
+        codec.write(snapshotFile, statuses);
+        journal.truncate();
+        compactionCount++;
+        plugin.getFilteredLogger().debug("Compacted status journal into snapshot with {} statuses in {} ms.",
+                statuses.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+}
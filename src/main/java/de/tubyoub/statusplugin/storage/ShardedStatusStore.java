@@ -0,0 +1,194 @@
+package de.tubyoub.statusplugin.storage;
+
+import de.tubyoub.statusplugin.StatusPlugin;
+import de.tubyoub.statusplugin.model.StatusChange;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Flat file backend split into a fixed number of YAML shard files.
+ * A player belongs to the shard picked by the first 16 bits of their UUID, so a save only
+ * rewrites the shards that contain changed players and a lookup only reads one shard.
+ * Shards are loaded in parallel on startup.
+ */
+public class ShardedStatusStore implements StatusStore {
+    private static final Pattern SHARD_FILE = Pattern.compile("(\\d+)-of-(\\d+)\\.yml");
+
+    private final StatusPlugin plugin;
+    private final File directory;
+    private final int shardCount;
+    private final SnapshotCodec codec = new YamlSnapshotCodec();
+    private long shardWrites;
+    private long batches;
+
+    /**
+     * Constructor for the ShardedStatusStore class.
+     * Redistributes existing shard files if the shard count changed.
+     *
+     * @param plugin     The StatusPlugin instance.
+     * @param directory  The directory holding the shard files.
+     * @param shardCount The number of shards.
+     * @throws IOException If existing shards could not be redistributed.
+     */
+    public ShardedStatusStore(StatusPlugin plugin, File directory, int shardCount) throws IOException {
+        this.plugin = plugin;
+        this.directory = directory;
+        this.shardCount = Math.max(1, Math.min(shardCount, 0x10000));
+        directory.mkdirs();
+        reshardIfNeeded();
+    }
+
+    @Override
+    public String getName() {
+        return "sharded";
+    }
+
+    /**
+     * Returns whether the store holds no shard files yet.
+     *
+     * @return true if nothing was saved so far.
+     */
+    public boolean isEmpty() {
+        File[] files = directory.listFiles((dir, name) -> SHARD_FILE.matcher(name).matches());
+        return files == null || files.length == 0;
+    }
+
+    @Override
+    public long loadAll(BiConsumer<UUID, String> consumer) throws IOException {
+        List<Map<UUID, String>> shards = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new HashMap<>());
+        }
+        try {
+            IntStream.range(0, shardCount).parallel().forEach(shard -> {
+                try {
+                    codec.read(shardFile(shard), shards.get(shard)::put);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        long count = 0;
+        for (Map<UUID, String> shard : shards) {
+            shard.forEach(consumer);
+            count += shard.size();
+        }
+        return count;
+    }
+
+    @Override
+    public void forEach(BiConsumer<UUID, String> consumer) throws IOException {
+        for (int shard = 0; shard < shardCount; shard++) {
+            // A codec may start over with a slower parser halfway through a file, so nothing is passed on
+            // before the whole shard was read
+            Map<UUID, String> statuses = new HashMap<>();
+            codec.read(shardFile(shard), statuses::put);
+            statuses.forEach(consumer);
+        }
+    }
+
+    @Override
+    public String get(UUID uuid) throws IOException {
+        Map<UUID, String> shard = new HashMap<>();
+        codec.read(shardFile(shardOf(uuid)), shard::put);
+        return shard.get(uuid);
+    }
+
+    @Override
+    public boolean supportsLookups() {
+        return true;
+    }
+
+    @Override
+    public void write(Collection<StatusChange> changes) throws IOException {
+        BitSet dirty = new BitSet(shardCount);
+        Map<Integer, List<StatusChange>> changesByShard = new HashMap<>();
+        for (StatusChange change : changes) {
+            int shard = shardOf(change.getUuid());
+            dirty.set(shard);
+            changesByShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(change);
+        }
+        for (int shard = dirty.nextSetBit(0); shard >= 0; shard = dirty.nextSetBit(shard + 1)) {
+            Map<UUID, String> statuses = new HashMap<>();
+            File file = shardFile(shard);
+            codec.read(file, statuses::put);
+            for (StatusChange change : changesByShard.get(shard)) {
+                if (change.isRemoval()) {
+                    statuses.remove(change.getUuid());
+                } else {
+                    statuses.put(change.getUuid(), change.getStatus());
+                }
+            }
+            codec.write(file, statuses);
+            shardWrites++;
+        }
+        batches++;
+    }
+
+    @Override
+    public Map<String, String> getStatistics() {
+        Map<String, String> statistics = new LinkedHashMap<>();
+        statistics.put("Shards", String.valueOf(shardCount));
+        statistics.put("Shard rewrites", shardWrites + " in " + batches + " saves");
+        return statistics;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private int shardOf(UUID uuid) {
+        return (int) ((uuid.getMostSignificantBits() >>> 48) % shardCount);
+    }
+
+    private File shardFile(int shard) {
+        return new File(directory, shard + "-of-" + shardCount + ".yml");
+    }
+
+    private void reshardIfNeeded() throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<File> foreign = new ArrayList<>();
+        for (File file : files) {
+            Matcher matcher = SHARD_FILE.matcher(file.getName());
+            if (matcher.matches() && Integer.parseInt(matcher.group(2)) != shardCount) {
+                foreign.add(file);
+            }
+        }
+        if (foreign.isEmpty()) {
+            return;
+        }
+        Map<UUID, String> read = new HashMap<>();
+        for (File file : foreign) {
+            codec.read(file, read::put);
+        }
+        List<StatusChange> statuses = new ArrayList<>(read.size());
+        read.forEach((uuid, status) -> statuses.add(new StatusChange(uuid, status)));
+        write(statuses);
+        for (File file : foreign) {
+            if (!file.delete()) {
+                throw new IOException("Could not delete old shard file " + file.getName());
+            }
+        }
+        plugin.getFilteredLogger().info("Redistributed {} statuses from {} old shard files into {} shards.",
+                statuses.size(), foreign.size(), shardCount);
+    }
+}
@@ -0,0 +1,46 @@
+package de.tubyoub.statusplugin.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * File format of a full status snapshot.
+ */
+public interface SnapshotCodec {
+
+    /**
+     * Returns the name of the format as used in the config.
+     *
+     * @return The format name.
+     */
+    String getName();
+
+    /**
+     * Returns the file name snapshots of this format are stored under.
+     *
+     * @return The snapshot file name.
+     */
+    String getFileName();
+
+    /**
+     * Reads all statuses from a snapshot file.
+     *
+     * @param file     The snapshot file, a missing file contains no statuses.
+     * @param consumer Receives every status in the file.
+     * @return The number of statuses read.
+     * @throws IOException If the file could not be read or is damaged.
+     */
+    int read(File file, BiConsumer<UUID, String> consumer) throws IOException;
+
+    /**
+     * Replaces a snapshot file with the given statuses.
+     *
+     * @param file     The snapshot file.
+     * @param statuses The statuses to write.
+     * @throws IOException If the file could not be written.
+     */
+    void write(File file, Map<UUID, String> statuses) throws IOException;
+}
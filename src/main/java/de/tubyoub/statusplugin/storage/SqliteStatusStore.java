@@ -0,0 +1,191 @@
+package de.tubyoub.statusplugin.storage;
+
+import de.tubyoub.statusplugin.StatusPlugin;
+import de.tubyoub.statusplugin.model.StatusChange;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Embedded SQLite backend.
+ * Uses the SQLite driver that ships with Spigot and Paper, so no external service is needed.
+ * Every status is one row keyed by the player's UUID, a change is a single indexed upsert.
+ */
+public class SqliteStatusStore implements StatusStore {
+    private static final String DRIVER = "org.sqlite.JDBC";
+
+    private final StatusPlugin plugin;
+    private final Connection connection;
+    private final PreparedStatement selectStatement;
+    private final PreparedStatement upsertStatement;
+    private final PreparedStatement deleteStatement;
+    private long writtenRows;
+
+    /**
+     * Constructor for the SqliteStatusStore class.
+     * Opens the database and creates the table if needed.
+     *
+     * @param plugin       The StatusPlugin instance.
+     * @param databaseFile The database file.
+     * @throws IOException If the database could not be opened.
+     */
+    public SqliteStatusStore(StatusPlugin plugin, File databaseFile) throws IOException {
+        this.plugin = plugin;
+        try {
+            Class.forName(DRIVER);
+            databaseFile.getAbsoluteFile().getParentFile().mkdirs();
+            connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+                statement.execute("CREATE TABLE IF NOT EXISTS statuses (uuid CHAR(36) PRIMARY KEY NOT NULL, status TEXT NOT NULL)");
+            }
+            connection.setAutoCommit(false);
+            selectStatement = connection.prepareStatement("SELECT status FROM statuses WHERE uuid = ?");
+            upsertStatement = connection.prepareStatement("INSERT OR REPLACE INTO statuses (uuid, status) VALUES (?, ?)");
+            deleteStatement = connection.prepareStatement("DELETE FROM statuses WHERE uuid = ?");
+        } catch (ClassNotFoundException e) {
+            throw new IOException("SQLite driver not found on this server", e);
+        } catch (SQLException e) {
+            throw new IOException("Could not open " + databaseFile.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "sqlite";
+    }
+
+    @Override
+    public long loadAll(BiConsumer<UUID, String> consumer) throws IOException {
+        long count = 0;
+        synchronized (connection) {
+            try (Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT uuid, status FROM statuses")) {
+                while (result.next()) {
+                    consumer.accept(UUID.fromString(result.getString(1)), result.getString(2));
+                    count++;
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                throw new IOException("Could not load statuses: " + e.getMessage(), e);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void forEach(BiConsumer<UUID, String> consumer) throws IOException {
+        loadAll(consumer);
+    }
+
+    @Override
+    public String get(UUID uuid) throws IOException {
+        synchronized (connection) {
+            try {
+                selectStatement.setString(1, uuid.toString());
+                try (ResultSet result = selectStatement.executeQuery()) {
+                    String status = result.next() ? result.getString(1) : null;
+                    connection.commit();
+                    return status;
+                }
+            } catch (SQLException e) {
+                throw new IOException("Could not load status of " + uuid + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public boolean supportsLookups() {
+        return true;
+    }
+
+    @Override
+    public void write(Collection<StatusChange> changes) throws IOException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        synchronized (connection) {
+            try {
+                boolean upserts = false;
+                boolean deletes = false;
+                for (StatusChange change : changes) {
+                    if (change.isRemoval()) {
+                        deleteStatement.setString(1, change.getUuid().toString());
+                        deleteStatement.addBatch();
+                        deletes = true;
+                    } else {
+                        upsertStatement.setString(1, change.getUuid().toString());
+                        upsertStatement.setString(2, change.getStatus());
+                        upsertStatement.addBatch();
+                        upserts = true;
+                    }
+                }
+                if (upserts) {
+                    upsertStatement.executeBatch();
+                }
+                if (deletes) {
+                    deleteStatement.executeBatch();
+                }
+                connection.commit();
+                writtenRows += changes.size();
+            } catch (SQLException e) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackError) {
+                    plugin.getFilteredLogger().error("Could not roll back status batch: {}", rollbackError.getMessage());
+                }
+                throw new IOException("Could not write statuses: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void clear() throws IOException {
+        synchronized (connection) {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("DELETE FROM statuses");
+                connection.commit();
+            } catch (SQLException e) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackError) {
+                    plugin.getFilteredLogger().error("Could not roll back clearing statuses: {}", rollbackError.getMessage());
+                }
+                throw new IOException("Could not clear statuses: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, String> getStatistics() {
+        Map<String, String> statistics = new LinkedHashMap<>();
+        statistics.put("Rows written", String.valueOf(writtenRows));
+        return statistics;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (connection) {
+            try {
+                selectStatement.close();
+                upsertStatement.close();
+                deleteStatement.close();
+                connection.close();
+            } catch (SQLException e) {
+                throw new IOException("Could not close the status database: " + e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package de.tubyoub.statusplugin.storage;
+
+import de.tubyoub.statusplugin.model.StatusText;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Size-bounded cache of player statuses in front of the {@link StatusStore}.
+ * Entries of online players are pinned and never evicted. Once the cache holds more than its
+ * maximum size, the least recently used offline entries are dropped. Offline entries that were
+ * not used for a while can be dropped as well. A cached entry may also record that a player has
+ * no status, so a player without one is not looked up again.
+ * Unpinned entries are kept in their own access-ordered map, so evicting never walks over pinned entries.
+ * <p>
+ * All methods are synchronized, the cache is used by the main thread and the pre-login threads.
+ */
+public class StatusCache {
+    private final int maxSize;
+    private final Map<UUID, Entry> entries = new HashMap<>(256);
+    // The unpinned part of entries, least recently used first
+    private final LinkedHashMap<UUID, Entry> unpinned = new LinkedHashMap<>(256, 0.75f, true);
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private static final class Entry {
+        String status;
+        // Parsed on first use and dropped whenever the status changes
+        StatusText text;
+        boolean pinned;
+        long lastUsed;
+
+        Entry(String status, long lastUsed) {
+            this.status = status;
+            this.lastUsed = lastUsed;
+        }
+
+        void setStatus(String status) {
+            this.status = status;
+            this.text = null;
+        }
+    }
+
+    /**
+     * Constructor for the StatusCache class.
+     *
+     * @param maxSize The number of entries above which offline entries are evicted, 0 for no limit.
+     */
+    public StatusCache(int maxSize) {
+        this.maxSize = maxSize > 0 ? maxSize : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns whether the cache holds an entry for the player, counting a hit or a miss.
+     *
+     * @param uuid The player's UUID.
+     * @return true if the player is cached, even if they have no status.
+     */
+    public synchronized boolean contains(UUID uuid) {
+        Entry entry = entries.get(uuid);
+        if (entry == null) {
+            misses++;
+            return false;
+        }
+        touch(uuid, entry, System.currentTimeMillis());
+        hits++;
+        return true;
+    }
+
+    /**
+     * Returns the cached status of a player.
+     * Reads of online players are not lookups that could go to the store, so no hit or miss is counted.
+     *
+     * @param uuid The player's UUID.
+     * @return The status, or null if the player has none or is not cached.
+     */
+    public synchronized String get(UUID uuid) {
+        Entry entry = entries.get(uuid);
+        if (entry == null) {
+            return null;
+        }
+        touch(uuid, entry, System.currentTimeMillis());
+        return entry.status;
+    }
+
+    /**
+     * Returns the parsed status of a player, without counting a hit or a miss.
+     * The status is parsed once and kept until it changes.
+     *
+     * @param uuid The player's UUID.
+     * @return The parsed status, or null if the player has none or is not cached.
+     */
+    public synchronized StatusText getText(UUID uuid) {
+        Entry entry = entries.get(uuid);
+        if (entry == null) {
+            return null;
+        }
+        touch(uuid, entry, System.currentTimeMillis());
+        if (entry.status == null) {
+            return null;
+        }
+        if (entry.text == null) {
+            entry.text = StatusText.parse(entry.status);
+        }
+        return entry.text;
+    }
+
+    /**
+     * Caches the status of a player, keeping a pin if the player already had one.
+     *
+     * @param uuid   The player's UUID.
+     * @param status The status, or null if the player has none.
+     */
+    public synchronized void put(UUID uuid, String status) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(uuid);
+        if (entry == null) {
+            entry = new Entry(status, now);
+            entries.put(uuid, entry);
+            unpinned.put(uuid, entry);
+            evictOverflow();
+        } else {
+            entry.setStatus(status);
+            touch(uuid, entry, now);
+        }
+    }
+
+    /**
+     * Updates the status of a player only if they are cached, without counting a hit or a miss.
+     *
+     * @param uuid   The player's UUID.
+     * @param status The status, or null if the player has none.
+     * @return true if the player was cached.
+     */
+    public synchronized boolean replace(UUID uuid, String status) {
+        Entry entry = entries.get(uuid);
+        if (entry == null) {
+            return false;
+        }
+        entry.setStatus(status);
+        return true;
+    }
+
+    /**
+     * Caches the status of a player and pins it until {@link #unpin(UUID)} is called.
+     *
+     * @param uuid   The player's UUID.
+     * @param status The status, or null if the player has none.
+     */
+    public synchronized void putPinned(UUID uuid, String status) {
+        Entry entry = entries.get(uuid);
+        if (entry == null) {
+            entry = new Entry(status, System.currentTimeMillis());
+            entry.pinned = true;
+            entries.put(uuid, entry);
+            evictOverflow();
+        } else {
+            entry.setStatus(status);
+            setPinned(uuid, entry, true);
+            entry.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Pins the entry of a player if they are cached.
+     *
+     * @param uuid The player's UUID.
+     * @return true if the player was cached.
+     */
+    public synchronized boolean pin(UUID uuid) {
+        Entry entry = entries.get(uuid);
+        if (entry == null) {
+            return false;
+        }
+        setPinned(uuid, entry, true);
+        entry.lastUsed = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Allows the entry of a player to be evicted again, called when they leave.
+     *
+     * @param uuid The player's UUID.
+     */
+    public synchronized void unpin(UUID uuid) {
+        Entry entry = entries.get(uuid);
+        if (entry != null) {
+            entry.lastUsed = System.currentTimeMillis();
+            setPinned(uuid, entry, false);
+        }
+        evictOverflow();
+    }
+
+    /**
+     * Unpins every entry whose player matches the predicate and was not used for the given time.
+     * Catches players that were loaded for a login that never completed.
+     *
+     * @param offline   Tells whether a player is offline.
+     * @param idleMillis How long the entry must have been unused.
+     */
+    public synchronized void unpinIf(Predicate<UUID> offline, long idleMillis) {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        for (Map.Entry<UUID, Entry> entry : entries.entrySet()) {
+            Entry value = entry.getValue();
+            if (value.pinned && value.lastUsed <= cutoff && offline.test(entry.getKey())) {
+                setPinned(entry.getKey(), value, false);
+            }
+        }
+        evictOverflow();
+    }
+
+    /**
+     * Drops the unpinned entries that were not used for the given time.
+     *
+     * @param idleMillis How long an entry must have been unused.
+     * @return The number of dropped entries.
+     */
+    public synchronized int evictIdle(long idleMillis) {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        int evicted = 0;
+        Iterator<Map.Entry<UUID, Entry>> iterator = unpinned.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<UUID, Entry> entry = iterator.next();
+            if (entry.getValue().lastUsed <= cutoff) {
+                iterator.remove();
+                entries.remove(entry.getKey());
+                evicted++;
+            }
+        }
+        evictions += evicted;
+        return evicted;
+    }
+
+    /**
+     * Forgets every status, keeping online players pinned without a status.
+     */
+    public synchronized void resetStatuses() {
+        entries.keySet().removeAll(unpinned.keySet());
+        unpinned.clear();
+        for (Entry entry : entries.values()) {
+            entry.setStatus(null);
+        }
+    }
+
+    /**
+     * Removes every entry, pinned or not.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        unpinned.clear();
+    }
+
+    /**
+     * Returns the number of cached entries.
+     *
+     * @return The entry count.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the maximum size of the cache.
+     *
+     * @return The maximum size, or Integer.MAX_VALUE if it is unbounded.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Marks an entry as used, moving it to the end of the eviction order if it is not pinned.
+     */
+    private void touch(UUID uuid, Entry entry, long now) {
+        entry.lastUsed = now;
+        if (!entry.pinned) {
+            unpinned.get(uuid);
+        }
+    }
+
+    private void setPinned(UUID uuid, Entry entry, boolean pinned) {
+        if (entry.pinned == pinned) {
+            return;
+        }
+        entry.pinned = pinned;
+        if (pinned) {
+            unpinned.remove(uuid);
+        } else {
+            unpinned.put(uuid, entry);
+        }
+    }
+
+    private void evictOverflow() {
+        // Access order, so the eldest entries come first, pinned entries are never in there
+        Iterator<UUID> iterator = unpinned.keySet().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            entries.remove(iterator.next());
+            iterator.remove();
+            evictions++;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package de.tubyoub.statusplugin.storage;
+
+import de.tubyoub.statusplugin.model.HistoryEntry;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Append-only file of status history entries.
+ * New entries are only ever appended. Since every player only keeps a fixed number of entries,
+ * the file is rewritten with just the kept entries once it holds too many outdated ones.
+ * The file offsets of the kept lines of every player are indexed, so reading the history of one player
+ * only reads those lines, and the file itself is only ever read line by line.
+ * <p>
+ * Record format, one per line: {@code <uuid> <timestamp> <base64 setter> <base64 status>},
+ * with {@code -} as status for a removal.
+ * <p>
+ * Not thread safe, all methods are called from the writer thread.
+ */
+public class StatusHistoryLog {
+    private static final int READ_BUFFER = 64 * 1024;
+
+    private final File logFile;
+    private final int keep;
+    private Map<UUID, Offsets> index = new HashMap<>();
+    private FileChannel channel;
+    private long recordCount;
+    private long keptCount;
+
+    /**
+     * The file offsets of the last lines of one player, oldest first, kept in a fixed-size ring.
+     */
+    private static final class Offsets {
+        final long[] ring;
+        int next;
+        int size;
+
+        Offsets(int capacity) {
+            ring = new long[capacity];
+        }
+
+        /**
+         * @return true if the ring grew, false if the oldest offset was replaced.
+         */
+        boolean add(long offset) {
+            ring[next] = offset;
+            next = (next + 1) % ring.length;
+            if (size < ring.length) {
+                size++;
+                return true;
+            }
+            return false;
+        }
+
+        long get(int i) {
+            return ring[(next - size + i + ring.length) % ring.length];
+        }
+    }
+
+    /**
+     * Reads a stream line by line and keeps the offset of every line.
+     */
+    private static final class LineReader {
+        final InputStream in;
+        byte[] line = new byte[256];
+        int length;
+        long lineStart;
+        long position;
+
+        LineReader(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * @return true if a complete line was read, false at the end of the stream.
+         */
+        boolean next() throws IOException {
+            lineStart = position;
+            length = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                position++;
+                if (b == '\n') {
+                    return true;
+                }
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = (byte) b;
+            }
+            return false;
+        }
+
+        String text() {
+            return new String(line, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Constructor for the StatusHistoryLog class.
+     *
+     * @param logFile The history file.
+     * @param keep    The number of entries kept per player.
+     */
+    public StatusHistoryLog(File logFile, int keep) {
+        this.logFile = logFile;
+        this.keep = keep;
+    }
+
+    /**
+     * Reads the file once to index the lines of every player.
+     * A torn last line, left behind by a crash in the middle of an append, is cut off.
+     *
+     * @return The number of entries in the file.
+     * @throws IOException If the file could not be read.
+     */
+    public long load() throws IOException {
+        index = new HashMap<>();
+        recordCount = 0;
+        keptCount = 0;
+        if (!logFile.exists()) {
+            return 0;
+        }
+        long end;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(logFile.toPath()), READ_BUFFER)) {
+            LineReader reader = new LineReader(in);
+            while (reader.next()) {
+                HistoryEntry entry = parse(reader.text());
+                if (entry != null) {
+                    index(entry.getUuid(), reader.lineStart);
+                    recordCount++;
+                }
+            }
+            end = reader.lineStart;
+        }
+        if (end < logFile.length()) {
+            openChannel().truncate(end);
+        }
+        return recordCount;
+    }
+
+    /**
+     * Passes the kept entries of one player to the consumer, oldest first.
+     * Only the indexed lines of the player are read.
+     *
+     * @param uuid     The player's UUID.
+     * @param consumer The consumer of the entries.
+     * @throws IOException If the file could not be read.
+     */
+    public void read(UUID uuid, Consumer<HistoryEntry> consumer) throws IOException {
+        Offsets offsets = index.get(uuid);
+        if (offsets == null) {
+            return;
+        }
+        try (FileChannel in = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(256);
+            for (int i = 0; i < offsets.size; i++) {
+                HistoryEntry entry = parse(readLine(in, offsets.get(i), buffer));
+                if (entry != null) {
+                    consumer.accept(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the given entries and forces them to disk.
+     *
+     * @param entries The entries to append.
+     * @throws IOException If the entries could not be written.
+     */
+    public void append(List<HistoryEntry> entries) throws IOException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(entries.size() * 96);
+        int[] starts = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            starts[i] = buffer.size();
+            writeEntry(buffer, entries.get(i));
+        }
+        FileChannel out = openChannel();
+        long base = out.size();
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+        out.force(false);
+        // Only indexed once the lines are really in the file
+        for (int i = 0; i < entries.size(); i++) {
+            index(entries.get(i).getUuid(), base + starts[i]);
+        }
+        recordCount += entries.size();
+    }
+
+    /**
+     * Rewrites the file with only the kept entries of every player.
+     * The old file is copied line by line, a line is kept if the index still points at it.
+     *
+     * @return The number of entries in the new file.
+     * @throws IOException If the file could not be written, the old file and index are still in place then.
+     */
+    public long compact() throws IOException {
+        close();
+        if (!logFile.exists()) {
+            return 0;
+        }
+        Map<UUID, Offsets> compacted = new HashMap<>();
+        long[] written = new long[1];
+        AtomicFiles.write(logFile.toPath(), out -> {
+            // Closed before the new file is moved into place
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(logFile.toPath()), READ_BUFFER)) {
+                LineReader reader = new LineReader(in);
+                while (reader.next()) {
+                    HistoryEntry entry = parse(reader.text());
+                    if (entry == null) {
+                        continue;
+                    }
+                    Offsets offsets = index.get(entry.getUuid());
+                    // Offsets only grow, so every line from the oldest indexed one on is kept
+                    if (offsets != null && reader.lineStart >= offsets.get(0)) {
+                        compacted.computeIfAbsent(entry.getUuid(), key -> new Offsets(keep)).add(written[0]);
+                        out.write(reader.line, 0, reader.length);
+                        out.write('\n');
+                        written[0] += reader.length + 1;
+                    }
+                }
+            }
+        });
+        index = compacted;
+        recordCount = 0;
+        for (Offsets offsets : compacted.values()) {
+            recordCount += offsets.size;
+        }
+        keptCount = recordCount;
+        return recordCount;
+    }
+
+    /**
+     * Returns the number of entries in the file.
+     *
+     * @return The record count.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Returns the number of entries that a rewrite would keep.
+     *
+     * @return The kept count.
+     */
+    public long getKeptCount() {
+        return keptCount;
+    }
+
+    /**
+     * Closes the history file.
+     *
+     * @throws IOException If the file could not be closed.
+     */
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void index(UUID uuid, long offset) {
+        if (index.computeIfAbsent(uuid, key -> new Offsets(keep)).add(offset)) {
+            keptCount++;
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            Files.createDirectories(logFile.getAbsoluteFile().getParentFile().toPath());
+            channel = FileChannel.open(logFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    private static String readLine(FileChannel in, long offset, ByteBuffer buffer) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        long position = offset;
+        while (true) {
+            buffer.clear();
+            int read = in.read(buffer, position);
+            if (read <= 0) {
+                return line.toString(StandardCharsets.UTF_8);
+            }
+            byte[] bytes = buffer.array();
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] == '\n') {
+                    line.write(bytes, 0, i);
+                    return line.toString(StandardCharsets.UTF_8);
+                }
+            }
+            line.write(bytes, 0, read);
+            position += read;
+        }
+    }
+
+    private static void writeEntry(OutputStream out, HistoryEntry entry) throws IOException {
+        Base64.Encoder encoder = Base64.getEncoder();
+        String line = entry.getUuid() + " "
+                + entry.getTimestamp() + " "
+                + encoder.encodeToString(entry.getSetter().getBytes(StandardCharsets.UTF_8)) + " "
+                + (entry.isRemoval() ? "-" : encoder.encodeToString(entry.getStatus().getBytes(StandardCharsets.UTF_8)))
+                + '\n';
+        out.write(line.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static HistoryEntry parse(String line) {
+        String[] parts = line.split(" ", -1);
+        if (parts.length != 4) {
+            return null;
+        }
+        try {
+            Base64.Decoder decoder = Base64.getDecoder();
+            String status = "-".equals(parts[3]) ? null : new String(decoder.decode(parts[3]), StandardCharsets.UTF_8);
+            return new HistoryEntry(UUID.fromString(parts[0]), Long.parseLong(parts[1]),
+                    new String(decoder.decode(parts[2]), StandardCharsets.UTF_8), status);
+        } catch (IllegalArgumentException e) {
+            // Damaged record, skip it
+            return null;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package de.tubyoub.statusplugin.storage;
+
+import de.tubyoub.statusplugin.model.StatusChange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Append-only journal of status changes.
+ * Every set or remove is written as one small line, so a write costs the same no matter
+ * how many statuses are stored. The journal is replayed on top of the snapshot when
+ * loading and folded into the snapshot once it grows too large.
+ * <p>
+ * Record format, one per line: {@code + <uuid> <base64 status>} or {@code - <uuid>}.
+ */
+public class StatusJournal {
+    private final File journalFile;
+    private FileChannel channel;
+    private long recordCount;
+
+    /**
+     * Constructor for the StatusJournal class.
+     *
+     * @param journalFile The journal file.
+     */
+    public StatusJournal(File journalFile) {
+        this.journalFile = journalFile;
+    }
+
+    /**
+     * Applies all records of the journal to the given map.
+     * A torn last line, left behind by a crash in the middle of an append, is cut off
+     * when {@code repair} is set.
+     *
+     * @param target The map to apply the records to.
+     * @param repair Whether a torn tail may be truncated.
+     * @return The number of records applied.
+     * @throws IOException If the journal could not be read.
+     */
+    public long replay(Map<UUID, String> target, boolean repair) throws IOException {
+        if (!journalFile.exists()) {
+            recordCount = 0;
+            return 0;
+        }
+        byte[] data = Files.readAllBytes(journalFile.toPath());
+        long records = 0;
+        int lineStart = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] != '\n') {
+                continue;
+            }
+            if (apply(new String(data, lineStart, i - lineStart, StandardCharsets.UTF_8), target)) {
+                records++;
+            }
+            lineStart = i + 1;
+        }
+        if (repair && lineStart < data.length) {
+            openChannel().truncate(lineStart);
+        }
+        recordCount = records;
+        return records;
+    }
+
+    /**
+     * Appends the given changes and forces them to disk.
+     *
+     * @param changes The changes to append.
+     * @throws IOException If the changes could not be written.
+     */
+    public void append(Collection<StatusChange> changes) throws IOException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(changes.size() * 64);
+        Base64.Encoder encoder = Base64.getEncoder();
+        for (StatusChange change : changes) {
+            String line = change.isRemoval()
+                    ? "- " + change.getUuid() + "\n"
+                    : "+ " + change.getUuid() + " " + encoder.encodeToString(change.getStatus().getBytes(StandardCharsets.UTF_8)) + "\n";
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            buffer.write(bytes, 0, bytes.length);
+        }
+        FileChannel out = openChannel();
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+        out.force(false);
+        recordCount += changes.size();
+    }
+
+    /**
+     * Empties the journal, called after its records were folded into a snapshot.
+     *
+     * @throws IOException If the journal could not be truncated.
+     */
+    public void truncate() throws IOException {
+        FileChannel out = openChannel();
+        out.truncate(0);
+        out.force(true);
+        recordCount = 0;
+    }
+
+    /**
+     * Returns the number of records in the journal.
+     *
+     * @return The record count.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Closes the journal file.
+     *
+     * @throws IOException If the file could not be closed.
+     */
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            Files.createDirectories(journalFile.getAbsoluteFile().getParentFile().toPath());
+            channel = FileChannel.open(journalFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    private static boolean apply(String line, Map<UUID, String> target) {
+        try {
+            if (line.startsWith("+ ")) {
+                int split = line.indexOf(' ', 2);
+                UUID uuid = UUID.fromString(line.substring(2, split));
+                target.put(uuid, new String(Base64.getDecoder().decode(line.substring(split + 1)), StandardCharsets.UTF_8));
+                return true;
+            }
+            if (line.startsWith("- ")) {
+                target.remove(UUID.fromString(line.substring(2)));
+                return true;
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            // Damaged record, skip it
+        }
+        return false;
+    }
+}
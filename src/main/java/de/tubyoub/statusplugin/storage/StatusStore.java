@@ -0,0 +1,129 @@
+package de.tubyoub.statusplugin.storage;
+
+import de.tubyoub.statusplugin.model.StatusChange;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Backend that persists player statuses.
+ * Apart from {@link #get(UUID)}, which is also called from login threads,
+ * stores are only used from the status writer thread.
+ */
+public interface StatusStore {
+
+    /**
+     * Returns the name of the backend as used in the config.
+     *
+     * @return The backend name.
+     */
+    String getName();
+
+    /**
+     * Loads every stored status, called once on startup and on reload.
+     *
+     * @param consumer Receives every stored status.
+     * @return The number of statuses loaded.
+     * @throws IOException If the statuses could not be read.
+     */
+    long loadAll(BiConsumer<UUID, String> consumer) throws IOException;
+
+    /**
+     * Iterates over every stored status without changing the store.
+     *
+     * @param consumer Receives every stored status.
+     * @throws IOException If the statuses could not be read.
+     */
+    void forEach(BiConsumer<UUID, String> consumer) throws IOException;
+
+    /**
+     * Looks up the status of a single player.
+     *
+     * @param uuid The player's UUID.
+     * @return The stored status, or null if the player has none.
+     * @throws IOException If the status could not be read.
+     */
+    String get(UUID uuid) throws IOException;
+
+    /**
+     * Returns whether {@link #get(UUID)} is cheap enough to be used for every login.
+     *
+     * @return true if single statuses can be looked up without reading everything.
+     */
+    default boolean supportsLookups() {
+        return false;
+    }
+
+    /**
+     * Writes a batch of changes in one go.
+     *
+     * @param changes The changes to write.
+     * @throws IOException If the changes could not be written.
+     */
+    void write(Collection<StatusChange> changes) throws IOException;
+
+    /**
+     * Stores the status of a single player.
+     *
+     * @param uuid   The player's UUID.
+     * @param status The status to store.
+     * @throws IOException If the status could not be written.
+     */
+    default void put(UUID uuid, String status) throws IOException {
+        write(Collections.singletonList(new StatusChange(uuid, status)));
+    }
+
+    /**
+     * Removes the status of a single player.
+     *
+     * @param uuid The player's UUID.
+     * @throws IOException If the status could not be removed.
+     */
+    default void remove(UUID uuid) throws IOException {
+        write(Collections.singletonList(new StatusChange(uuid, null)));
+    }
+
+    /**
+     * Removes every stored status.
+     * Stores that can drop everything at once should override this.
+     *
+     * @throws IOException If the statuses could not be removed.
+     */
+    default void clear() throws IOException {
+        List<StatusChange> removals = new ArrayList<>();
+        forEach((uuid, status) -> removals.add(new StatusChange(uuid, null)));
+        for (int start = 0; start < removals.size(); start += 10000) {
+            write(removals.subList(start, Math.min(removals.size(), start + 10000)));
+        }
+    }
+
+    /**
+     * Gives the store a chance to do background housekeeping after a flush.
+     *
+     * @throws IOException If the housekeeping failed.
+     */
+    default void maintenance() throws IOException {
+    }
+
+    /**
+     * Returns backend specific numbers shown in /tsp info.
+     *
+     * @return The statistics by label.
+     */
+    default Map<String, String> getStatistics() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Closes the store.
+     *
+     * @throws IOException If the store could not be closed cleanly.
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,295 @@
+package de.tubyoub.statusplugin.storage;
+
+import de.tubyoub.statusplugin.Managers.ConfigManager;
+import de.tubyoub.statusplugin.StatusPlugin;
+import de.tubyoub.statusplugin.model.StatusChange;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Write-behind persistence for player statuses.
+ * Changes are collected per player, so repeated changes of the same player are written once.
+ * A background thread hands them to the {@link StatusStore} in one batch once the save interval
+ * has passed or enough changes have piled up. A status change never waits for the disk on the main thread.
+ */
+public class StatusWriter {
+    private final StatusPlugin plugin;
+    private final StatusStore store;
+    private final int flushThreshold;
+    private final ScheduledExecutorService executor;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Map<UUID, StatusChange> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final List<Flushable> companions = new CopyOnWriteArrayList<>();
+
+    private volatile long lastSaveNanos;
+    private volatile long totalSaveNanos;
+    private volatile long saveCount;
+
+    /**
+     * Work that needs direct access to the store.
+     *
+     * @param <T> The result type.
+     */
+    @FunctionalInterface
+    public interface StoreTask<T> {
+        T run(StatusStore store) throws IOException;
+    }
+
+    /**
+     * Constructor for the StatusWriter class.
+     *
+     * @param plugin The StatusPlugin instance.
+     * @param store  The store the changes are written to.
+     */
+    public StatusWriter(StatusPlugin plugin, StatusStore store) {
+        ConfigManager configManager = plugin.getConfigManager();
+        this.plugin = plugin;
+        this.store = store;
+        this.flushThreshold = Math.max(1, configManager.getSaveAfterChanges());
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TubsStatusPlugin-Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, configManager.getSaveInterval());
+        executor.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Loads every stored status, without racing a running save.
+     *
+     * @param consumer The consumer of the statuses.
+     * @return The number of statuses loaded.
+     * @throws IOException If the statuses could not be read.
+     */
+    public long load(BiConsumer<UUID, String> consumer) throws IOException {
+        writeLock.lock();
+        try {
+            return store.loadAll(consumer);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Records a change of a player's status.
+     * Queues a flush right away once the configured number of changes is pending.
+     *
+     * @param uuid   The player's UUID.
+     * @param status The new status, or null if the status was removed.
+     */
+    public void record(UUID uuid, String status) {
+        pending.put(uuid, new StatusChange(uuid, status));
+        if (pending.size() >= flushThreshold && flushQueued.compareAndSet(false, true)) {
+            executor.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Registers data that is saved together with the statuses.
+     * It is flushed on the writer thread after every save and on shutdown.
+     *
+     * @param companion The data to flush.
+     */
+    public void addCompanion(Flushable companion) {
+        companions.add(companion);
+    }
+
+    /**
+     * Runs a task on the writer thread after all pending changes were written,
+     * so the task sees the current state of the store.
+     *
+     * @param task The task to run.
+     * @param <T>  The result type.
+     * @return A future completed with the result of the task.
+     */
+    public <T> CompletableFuture<T> submit(StoreTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            writeLock.lock();
+            try {
+                flushPending();
+                future.complete(task.run(store));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                writeLock.unlock();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Queues a flush and waits for it to finish.
+     *
+     * @param timeoutMillis How long to wait for the flush.
+     * @return true if the flush finished in time.
+     */
+    public boolean flushAndWait(long timeoutMillis) {
+        Future<?> future = executor.submit(this::flushQuietly);
+        try {
+            future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            plugin.getFilteredLogger().warn("Waiting for statuses to be saved failed: {}", e.toString());
+        }
+        return false;
+    }
+
+    /**
+     * Stops the background writer and writes everything that is still pending.
+     * Waits at most the given time for a running save, then flushes on the calling thread.
+     *
+     * @param timeoutMillis The maximum time to wait for the writer thread.
+     */
+    public void shutdown(long timeoutMillis) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                plugin.getFilteredLogger().warn("Status writer did not stop within {} ms.", timeoutMillis);
+                executor.shutdownNow();
+            }
+            if (!writeLock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                plugin.getFilteredLogger().error("Could not save statuses on shutdown, a save is still running.");
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            plugin.getFilteredLogger().error("Interrupted while saving statuses on shutdown.");
+            return;
+        }
+        try {
+            flushPending();
+            flushCompanions();
+            store.close();
+        } catch (IOException e) {
+            plugin.getFilteredLogger().error("Could not save statuses: {}", e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Looks up the status of a single player, including changes that are not written yet.
+     * Safe to call from any thread, only stores that support lookups should be asked.
+     *
+     * @param uuid The player's UUID.
+     * @return The status, or null if the player has none.
+     * @throws IOException If the status could not be read.
+     */
+    public String lookup(UUID uuid) throws IOException {
+        // A pending change is only dropped after it was written, so checking it first never misses an update
+        StatusChange change = pending.get(uuid);
+        if (change != null) {
+            return change.getStatus();
+        }
+        return store.get(uuid);
+    }
+
+    /**
+     * Returns the number of players whose status change has not been written yet.
+     *
+     * @return The pending change count.
+     */
+    public int getPendingChanges() {
+        return pending.size();
+    }
+
+    /**
+     * Returns the store the changes are written to.
+     *
+     * @return The StatusStore instance.
+     */
+    public StatusStore getStore() {
+        return store;
+    }
+
+    /**
+     * Returns how long the last save took.
+     *
+     * @return The duration of the last save in milliseconds.
+     */
+    public double getLastSaveMillis() {
+        return lastSaveNanos / 1_000_000.0;
+    }
+
+    /**
+     * Returns the average duration of all saves so far.
+     *
+     * @return The average save duration in milliseconds.
+     */
+    public double getAverageSaveMillis() {
+        long count = saveCount;
+        return count == 0 ? 0 : totalSaveNanos / (double) count / 1_000_000.0;
+    }
+
+    /**
+     * Returns the number of saves done so far.
+     *
+     * @return The save count.
+     */
+    public long getSaveCount() {
+        return saveCount;
+    }
+
+    private void flushQuietly() {
+        flushQueued.set(false);
+        writeLock.lock();
+        try {
+            flushPending();
+            flushCompanions();
+            store.maintenance();
+        } catch (IOException | RuntimeException e) {
+            // Failed changes stay pending, so the next interval retries them
+            plugin.getFilteredLogger().error("Could not save statuses: {}", e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void flushCompanions() throws IOException {
+        for (Flushable companion : companions) {
+            companion.flush();
+        }
+    }
+
+    private void flushPending() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<StatusChange> changes = new ArrayList<>(pending.values());
+        store.write(changes);
+        for (StatusChange change : changes) {
+            // Only drop the change if it was not replaced while we were writing
+            pending.remove(change.getUuid(), change);
+        }
+
+        long duration = System.nanoTime() - start;
+        lastSaveNanos = duration;
+        totalSaveNanos += duration;
+        saveCount++;
+        plugin.getFilteredLogger().debug("Wrote {} status changes to the {} store in {} ms.",
+                changes.size(), store.getName(), duration / 1_000_000);
+    }
+}
@@ -0,0 +1,371 @@
+package de.tubyoub.statusplugin.storage;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * Snapshot in the flat {@code uuid: status} layout of statuses.yml.
+ * <p>
+ * Reading and writing are streamed line by line instead of building a {@link YamlConfiguration} tree,
+ * so a save needs no second copy of all statuses. The reader understands plain, single quoted and
+ * double quoted values, which covers everything Bukkit and this codec write. Anything else, like
+ * hand edited files using block scalars or anchors, is handed to YamlConfiguration instead.
+ * In that case the consumer may see entries that were already read by the streaming pass a second time.
+ */
+public class YamlSnapshotCodec implements SnapshotCodec {
+    // Plain values SnakeYAML resolves to something other than a string (null, booleans, numbers, timestamps, merge keys)
+    private static final Pattern NON_STRING_PLAIN = Pattern.compile(
+            "~|null|Null|NULL|<<|="
+                    + "|yes|Yes|YES|no|No|NO|true|True|TRUE|false|False|FALSE|on|On|ON|off|Off|OFF"
+                    + "|[-+]?0b[0-1_]+|[-+]?0[0-7_]+|[-+]?(?:0|[1-9][0-9_]*)|[-+]?0x[0-9a-fA-F_]+|[-+]?[1-9][0-9_]*(?::[0-5]?[0-9])+"
+                    + "|[-+]?(?:\\.[0-9]+|[0-9_]+(?:\\.[0-9_]*)?)(?:[eE][-+]?[0-9]+)?|[-+]?[0-9][0-9_]*(?::[0-5]?[0-9])+\\.[0-9_]*"
+                    + "|[-+]?\\.(?:inf|Inf|INF)|\\.(?:nan|NaN|NAN)"
+                    + "|[0-9]{4}-[0-9]{2}-[0-9]{2}"
+                    + "|[0-9]{4}-[0-9]{1,2}-[0-9]{1,2}(?:[Tt]|[ \\t]+)[0-9]{1,2}:[0-9]{2}:[0-9]{2}(?:\\.[0-9]*)?(?:[ \\t]*(?:Z|[-+][0-9]{1,2}(?::[0-9]{2})?))?");
+
+    @Override
+    public String getName() {
+        return "yaml";
+    }
+
+    @Override
+    public String getFileName() {
+        return "statuses.yml";
+    }
+
+    @Override
+    public int read(File file, BiConsumer<UUID, String> consumer) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            return readStreaming(new LineReader(reader), consumer);
+        } catch (UnsupportedYamlException e) {
+            return readWithBukkit(file, consumer);
+        }
+    }
+
+    @Override
+    public void write(File file, Map<UUID, String> statuses) throws IOException {
+        AtomicFiles.write(file.toPath(), out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            StringBuilder line = new StringBuilder(128);
+            for (Map.Entry<UUID, String> entry : statuses.entrySet()) {
+                line.setLength(0);
+                line.append(entry.getKey()).append(": ");
+                appendQuoted(line, entry.getValue());
+                line.append('\n');
+                writer.append(line);
+            }
+            writer.flush();
+        });
+    }
+
+    private int readWithBukkit(File file, BiConsumer<UUID, String> consumer) {
+        YamlConfiguration yaml = YamlConfiguration.loadConfiguration(file);
+        int count = 0;
+        for (String key : yaml.getKeys(false)) {
+            String status = yaml.getString(key);
+            if (status != null) {
+                consumer.accept(UUID.fromString(key), status);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int readStreaming(LineReader lines, BiConsumer<UUID, String> consumer) throws IOException {
+        int count = 0;
+        String line;
+        while ((line = lines.next()) != null) {
+            if (count == 0 && !line.isEmpty() && line.charAt(0) == '\uFEFF') {
+                line = line.substring(1);
+            }
+            if (isBlankOrComment(line) || line.equals("{}") || line.equals("---")) {
+                continue;
+            }
+            int separator = line.indexOf(": ");
+            if (separator <= 0 || isWhitespace(line.charAt(0))) {
+                throw new UnsupportedYamlException();
+            }
+            UUID uuid;
+            try {
+                uuid = UUID.fromString(line.substring(0, separator));
+            } catch (IllegalArgumentException e) {
+                throw new UnsupportedYamlException();
+            }
+            consumer.accept(uuid, readValue(line.substring(separator + 2).trim(), lines));
+            count++;
+        }
+        return count;
+    }
+
+    private String readValue(String value, LineReader lines) throws IOException {
+        if (value.isEmpty()) {
+            throw new UnsupportedYamlException();
+        }
+        char first = value.charAt(0);
+        if (first == '\'') {
+            return readSingleQuoted(value, lines);
+        }
+        if (first == '"') {
+            return readDoubleQuoted(value, lines);
+        }
+        if ("|>&*!%@`[]{},#".indexOf(first) >= 0
+                || ((first == '-' || first == '?' || first == ':') && (value.length() == 1 || isWhitespace(value.charAt(1))))) {
+            throw new UnsupportedYamlException();
+        }
+        return readPlain(value, lines);
+    }
+
+    private String readPlain(String value, LineReader lines) throws IOException {
+        StringBuilder result = new StringBuilder(stripComment(value));
+        String next;
+        while ((next = lines.peek()) != null && !next.isEmpty() && isWhitespace(next.charAt(0)) && !isBlankOrComment(next)) {
+            lines.next();
+            result.append(' ').append(stripComment(next.trim()));
+        }
+        String plain = result.toString();
+        if (plain.contains(": ") || NON_STRING_PLAIN.matcher(plain).matches()) {
+            throw new UnsupportedYamlException();
+        }
+        return plain;
+    }
+
+    private String readSingleQuoted(String value, LineReader lines) throws IOException {
+        StringBuilder result = new StringBuilder();
+        String current = value;
+        int index = 1;
+        while (true) {
+            for (; index < current.length(); index++) {
+                char c = current.charAt(index);
+                if (c != '\'') {
+                    result.append(c);
+                } else if (index + 1 < current.length() && current.charAt(index + 1) == '\'') {
+                    result.append('\'');
+                    index++;
+                } else {
+                    checkTrailing(current, index + 1);
+                    return result.toString();
+                }
+            }
+            current = nextFoldedLine(result, lines);
+            index = 0;
+        }
+    }
+
+    private String readDoubleQuoted(String value, LineReader lines) throws IOException {
+        StringBuilder result = new StringBuilder();
+        String current = value;
+        int index = 1;
+        while (true) {
+            boolean escapedBreak = false;
+            for (; index < current.length(); index++) {
+                char c = current.charAt(index);
+                if (c == '"') {
+                    checkTrailing(current, index + 1);
+                    return result.toString();
+                }
+                if (c != '\\') {
+                    result.append(c);
+                    continue;
+                }
+                if (++index >= current.length()) {
+                    escapedBreak = true;
+                    break;
+                }
+                index = appendEscape(result, current, index);
+            }
+            if (escapedBreak) {
+                // An escaped line break joins the lines without any space
+                String next = lines.next();
+                if (next == null) {
+                    throw new UnsupportedYamlException();
+                }
+                current = next.trim();
+            } else {
+                current = nextFoldedLine(result, lines);
+            }
+            index = 0;
+        }
+    }
+
+    private static int appendEscape(StringBuilder result, String line, int index) {
+        char c = line.charAt(index);
+        switch (c) {
+            case '0': result.append('\0'); return index;
+            case 'a': result.append('\u0007'); return index;
+            case 'b': result.append('\b'); return index;
+            case 't':
+            case '\t': result.append('\t'); return index;
+            case 'n': result.append('\n'); return index;
+            case 'v': result.append('\u000B'); return index;
+            case 'f': result.append('\f'); return index;
+            case 'r': result.append('\r'); return index;
+            case 'e': result.append('\u001B'); return index;
+            case ' ': result.append(' '); return index;
+            case '"': result.append('"'); return index;
+            case '/': result.append('/'); return index;
+            case '\\': result.append('\\'); return index;
+            case 'N': result.append('\u0085'); return index;
+            case '_': result.append('\u00A0'); return index;
+            case 'L': result.append('\u2028'); return index;
+            case 'P': result.append('\u2029'); return index;
+            case 'x': return appendCodePoint(result, line, index, 2);
+            case 'u': return appendCodePoint(result, line, index, 4);
+            case 'U': return appendCodePoint(result, line, index, 8);
+            default: throw new UnsupportedYamlException();
+        }
+    }
+
+    private static int appendCodePoint(StringBuilder result, String line, int index, int digits) {
+        if (index + digits >= line.length()) {
+            throw new UnsupportedYamlException();
+        }
+        try {
+            result.appendCodePoint(Integer.parseInt(line.substring(index + 1, index + 1 + digits), 16));
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedYamlException();
+        }
+        return index + digits;
+    }
+
+    /**
+     * Reads the next line of a quoted value that spans several lines and applies YAML line folding:
+     * a single line break becomes a space, every empty line becomes a line break.
+     */
+    private static String nextFoldedLine(StringBuilder result, LineReader lines) throws IOException {
+        int end = result.length();
+        while (end > 0 && isWhitespace(result.charAt(end - 1))) {
+            end--;
+        }
+        result.setLength(end);
+
+        String next = lines.next();
+        int emptyLines = 0;
+        while (next != null && next.trim().isEmpty()) {
+            emptyLines++;
+            next = lines.next();
+        }
+        if (next == null || !isWhitespace(next.charAt(0))) {
+            throw new UnsupportedYamlException();
+        }
+        if (emptyLines == 0) {
+            result.append(' ');
+        }
+        for (int i = 0; i < emptyLines; i++) {
+            result.append('\n');
+        }
+        return next.trim();
+    }
+
+    private static void checkTrailing(String line, int index) {
+        String rest = line.substring(index).trim();
+        if (!rest.isEmpty() && rest.charAt(0) != '#') {
+            throw new UnsupportedYamlException();
+        }
+    }
+
+    private static String stripComment(String value) {
+        int comment = value.indexOf(" #");
+        return (comment >= 0 ? value.substring(0, comment) : value).trim();
+    }
+
+    private static boolean isBlankOrComment(String line) {
+        String trimmed = line.trim();
+        return trimmed.isEmpty() || trimmed.charAt(0) == '#';
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    /**
+     * Appends a value as a YAML scalar that reads back as exactly the same string.
+     * Single quotes are used unless the value contains characters that need escaping.
+     */
+    private static void appendQuoted(StringBuilder line, String value) {
+        boolean needsEscaping = false;
+        for (int i = 0; i < value.length() && !needsEscaping; i++) {
+            needsEscaping = !isPrintable(value.charAt(i));
+        }
+        if (!needsEscaping) {
+            line.append('\'');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                line.append(c);
+                if (c == '\'') {
+                    line.append('\'');
+                }
+            }
+            line.append('\'');
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (isPrintable(c)) {
+                line.append(c);
+            } else {
+                line.append(String.format("\\u%04x", (int) c));
+            }
+        }
+        line.append('"');
+    }
+
+    private static boolean isPrintable(char c) {
+        return (c >= 0x20 && c < 0x7F) || c == 0x85 || (c >= 0xA0 && c <= 0xFFFD && c != 0xFEFF);
+    }
+
+    /**
+     * Thrown when the file uses YAML features the streaming reader does not handle.
+     */
+    private static class UnsupportedYamlException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedYamlException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Line source with a single line of look ahead.
+     */
+    private static class LineReader {
+        private final BufferedReader reader;
+        private String peeked;
+
+        LineReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        String peek() throws IOException {
+            if (peeked == null) {
+                peeked = reader.readLine();
+            }
+            return peeked;
+        }
+
+        String next() throws IOException {
+            if (peeked != null) {
+                String line = peeked;
+                peeked = null;
+                return line;
+            }
+            return reader.readLine();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package de.tubyoub.statusplugin.sync;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Transport between instances inside the same JVM.
+ * Every instance joined to the same channel receives the changes of the others.
+ * Meant for testing the sync without any network setup.
+ */
+public class LoopbackSyncTransport implements SyncTransport {
+    private static final Map<String, List<LoopbackSyncTransport>> CHANNELS = new ConcurrentHashMap<>();
+
+    private final String channel;
+    private volatile Consumer<StatusDelta> receiver;
+
+    /**
+     * Constructor for the LoopbackSyncTransport class.
+     *
+     * @param channel The channel to join.
+     */
+    public LoopbackSyncTransport(String channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public String getName() {
+        return "loopback (" + channel + ")";
+    }
+
+    @Override
+    public void start(Consumer<StatusDelta> receiver) {
+        this.receiver = receiver;
+        CHANNELS.computeIfAbsent(channel, key -> new CopyOnWriteArrayList<>()).add(this);
+    }
+
+    @Override
+    public void publish(StatusDelta delta) {
+        for (LoopbackSyncTransport member : CHANNELS.getOrDefault(channel, List.of())) {
+            if (member != this && member.receiver != null) {
+                member.receiver.accept(delta);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        List<LoopbackSyncTransport> members = CHANNELS.get(channel);
+        if (members != null) {
+            members.remove(this);
+        }
+        receiver = null;
+    }
+}
@@ -0,0 +1,477 @@
+package de.tubyoub.statusplugin.sync;
+
+import de.tubyoub.statusplugin.StatusPlugin;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Transport over plain TCP connections, meant for servers on the same machine or network.
+ * Every server listens on its own port and keeps one outgoing connection to each configured peer,
+ * sending one encoded change per line. Every line is signed with an HMAC of sync.secret,
+ * connections sending a line without a valid signature are closed.
+ * <p>
+ * Lines carry a sequence number the receiver acknowledges once it took the change. Changes stay in a bounded
+ * backlog until they are acknowledged and are sent again after a reconnect, so a peer that is down
+ * or a connection that broke without an error loses nothing. Changes older than the time the receiver keeps
+ * versions for are dropped, it would reject them anyway. A connection without acknowledgements for
+ * {@value #ACK_TIMEOUT} ms is opened again, idle connections send heartbeats so this is noticed without changes.
+ * Sending the same change twice is harmless, the receiver drops changes it already has.
+ * <p>
+ * Line formats: {@code <sequence> <change> <signature>}, {@code <sequence> ping <signature>}
+ * and back to the sender {@code ack <sequence> <signature>}.
+ */
+public class SocketSyncTransport implements SyncTransport {
+    private static final int BACKLOG_LIMIT = 10000;
+    private static final int CONNECT_TIMEOUT = 1000;
+    // Longest line read, far above any valid change
+    private static final int MAX_LINE_LENGTH = 16 * 1024;
+    private static final long ACK_TIMEOUT = 30000;
+    private static final long HEARTBEAT_INTERVAL = 15000;
+    // Incoming connections without a line for this long are closed, peers send heartbeats more often
+    private static final int READ_TIMEOUT = 60000;
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String PING = "ping";
+
+    private final StatusPlugin plugin;
+    private final InetSocketAddress bindAddress;
+    private final SecretKeySpec key;
+    private final List<Peer> peers = new ArrayList<>();
+    // Each peer needs one connection, the rest covers reconnects while the old connection is still timing out
+    private final int maxConnections;
+    private final ScheduledExecutorService sender;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private Mac senderMac;
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+
+    /**
+     * Constructor for the SocketSyncTransport class.
+     *
+     * @param plugin The StatusPlugin instance.
+     * @param host   The address to listen on.
+     * @param port   The port to listen on.
+     * @param peers  The other servers as host:port.
+     * @param secret The secret shared by all servers, lines are signed with it.
+     */
+    public SocketSyncTransport(StatusPlugin plugin, String host, int port, List<String> peers, String secret) {
+        this.plugin = plugin;
+        this.bindAddress = new InetSocketAddress(host, port);
+        this.key = secret == null || secret.isEmpty() ? null
+                : new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        for (String peer : peers) {
+            int separator = peer.lastIndexOf(':');
+            if (separator <= 0) {
+                plugin.getFilteredLogger().warn("Ignoring sync peer '{}', expected host:port", peer);
+                continue;
+            }
+            try {
+                this.peers.add(new Peer(new InetSocketAddress(peer.substring(0, separator),
+                        Integer.parseInt(peer.substring(separator + 1)))));
+            } catch (IllegalArgumentException e) {
+                plugin.getFilteredLogger().warn("Ignoring sync peer '{}': {}", peer, e.getMessage());
+            }
+        }
+        this.maxConnections = this.peers.size() * 2 + 2;
+        this.sender = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TubsStatusPlugin-SyncSender");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public String getName() {
+        return "socket (" + bindAddress.getHostString() + ":" + bindAddress.getPort() + ")";
+    }
+
+    @Override
+    public void start(Consumer<StatusDelta> receiver) throws IOException {
+        if (key == null) {
+            throw new IOException("sync.secret is not set");
+        }
+        senderMac = newMac();
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(bindAddress);
+        running = true;
+        startThread("TubsStatusPlugin-SyncAccept", () -> acceptLoop(receiver));
+        // Retries peers that were down, checks acknowledgements and sends heartbeats
+        sender.scheduleWithFixedDelay(this::flushPeers, 5, 5, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void publish(StatusDelta delta) {
+        String line = delta.encode();
+        sender.execute(() -> {
+            for (Peer peer : peers) {
+                peer.add(line);
+            }
+            flushPeers();
+        });
+    }
+
+    @Override
+    public Map<String, String> getStatistics() {
+        int connected = 0;
+        int waiting = 0;
+        for (Peer peer : peers) {
+            if (peer.socket != null) {
+                connected++;
+            }
+            waiting += peer.waiting;
+        }
+        Map<String, String> statistics = new LinkedHashMap<>();
+        statistics.put("Sync peers connected", connected + " of " + peers.size() + ", "
+                + waiting + " changes not acknowledged");
+        statistics.put("Sync lines", sent.get() + " sent, " + received.get() + " received, " + dropped.get() + " dropped, "
+                + refused.get() + " connections refused");
+        return statistics;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        sender.shutdown();
+        try {
+            sender.awaitTermination(CONNECT_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeQuietly(serverSocket);
+        for (Socket connection : connections) {
+            closeQuietly(connection);
+        }
+        for (Peer peer : peers) {
+            peer.disconnect();
+        }
+    }
+
+    private void acceptLoop(Consumer<StatusDelta> receiver) {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                if (connections.size() >= maxConnections) {
+                    refused.incrementAndGet();
+                    plugin.getFilteredLogger().warn("Refusing sync connection from {}, already {} connections open",
+                            socket.getRemoteSocketAddress(), connections.size());
+                    closeQuietly(socket);
+                    continue;
+                }
+                socket.setSoTimeout(READ_TIMEOUT);
+                connections.add(socket);
+                startThread("TubsStatusPlugin-SyncReader", () -> readLoop(socket, receiver));
+            } catch (IOException e) {
+                if (running) {
+                    plugin.getFilteredLogger().warn("Sync listener failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void readLoop(Socket socket, Consumer<StatusDelta> receiver) {
+        try (Reader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            Mac mac = newMac();
+            String line;
+            while (running && (line = readLine(reader)) != null) {
+                String payload = verify(mac, line);
+                int separator = payload == null ? -1 : payload.indexOf(' ');
+                if (separator < 0) {
+                    refused.incrementAndGet();
+                    plugin.getFilteredLogger().warn("Closing sync connection from {}: line without a valid signature, "
+                            + "check that sync.secret is the same on every server", socket.getRemoteSocketAddress());
+                    return;
+                }
+                String sequence = payload.substring(0, separator);
+                String content = payload.substring(separator + 1);
+                if (!PING.equals(content)) {
+                    StatusDelta delta = StatusDelta.decode(content);
+                    if (delta == null) {
+                        // Acknowledged anyway, sending it again would not repair it
+                        plugin.getFilteredLogger().debug("Ignoring damaged sync line from {}", socket.getRemoteSocketAddress());
+                    } else {
+                        received.incrementAndGet();
+                        receiver.accept(delta);
+                    }
+                }
+                String ack = "ack " + sequence;
+                writer.write(ack + " " + sign(mac, ack) + "\n");
+                // Lines that arrived together are acknowledged together
+                if (!reader.ready()) {
+                    writer.flush();
+                }
+            }
+        } catch (IOException e) {
+            plugin.getFilteredLogger().debug("Sync connection from {} closed: {}", socket.getRemoteSocketAddress(), e.getMessage());
+        } finally {
+            connections.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Reads acknowledgements from an outgoing connection until it is closed.
+     */
+    private void ackLoop(Peer peer, Socket socket) {
+        try (Reader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            Mac mac = newMac();
+            String line;
+            while ((line = readLine(reader)) != null) {
+                String payload = verify(mac, line);
+                if (payload == null || !payload.startsWith("ack ")) {
+                    plugin.getFilteredLogger().warn("Sync peer {} sent an invalid acknowledgement, "
+                            + "check that sync.secret is the same on every server", peer.address);
+                    return;
+                }
+                long sequence = Long.parseLong(payload.substring(4));
+                peer.acknowledged.accumulateAndGet(sequence, Math::max);
+                if (!reader.ready()) {
+                    sender.execute(peer::trim);
+                }
+            }
+        } catch (IOException | NumberFormatException | RejectedExecutionException e) {
+            plugin.getFilteredLogger().debug("Acknowledgements of sync peer {} stopped: {}", peer.address, e.getMessage());
+        }
+    }
+
+    private void flushPeers() {
+        long now = System.currentTimeMillis();
+        for (Peer peer : peers) {
+            peer.flush(now);
+        }
+    }
+
+    private Mac newMac() throws IOException {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not set up " + HMAC_ALGORITHM + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String sign(Mac mac, String payload) {
+        return Base64.getEncoder().encodeToString(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Checks the signature at the end of a line.
+     *
+     * @return The line without its signature, or null if the signature is missing or wrong.
+     */
+    private static String verify(Mac mac, String line) {
+        int separator = line.lastIndexOf(' ');
+        if (separator < 0) {
+            return null;
+        }
+        String payload = line.substring(0, separator);
+        byte[] expected = sign(mac, payload).getBytes(StandardCharsets.UTF_8);
+        byte[] actual = line.substring(separator + 1).getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(expected, actual) ? payload : null;
+    }
+
+    /**
+     * Reads one line of at most {@link #MAX_LINE_LENGTH} characters.
+     *
+     * @return The line without the line break, or null at the end of the stream.
+     * @throws IOException If the line is longer or reading failed.
+     */
+    private static String readLine(Reader reader) throws IOException {
+        StringBuilder line = new StringBuilder(256);
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '\n') {
+                return line.toString();
+            }
+            if (line.length() >= MAX_LINE_LENGTH) {
+                throw new IOException("line longer than " + MAX_LINE_LENGTH + " characters");
+            }
+            line.append((char) c);
+        }
+        // An unfinished last line is dropped, the sender sends it again
+        return null;
+    }
+
+    private void startThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // Nothing left to do
+        }
+    }
+
+    /**
+     * A signed line waiting for its acknowledgement.
+     */
+    private static final class Entry {
+        final long sequence;
+        final String line;
+        final long addedAt;
+        // When it was written to the current connection, 0 if it still has to be written
+        long writtenAt;
+
+        Entry(long sequence, String line, long addedAt) {
+            this.sequence = sequence;
+            this.line = line;
+            this.addedAt = addedAt;
+        }
+    }
+
+    /**
+     * Outgoing connection to one peer, only used on the sender thread except for the acknowledged sequence.
+     */
+    private class Peer {
+        private final InetSocketAddress address;
+        private final Deque<Entry> backlog = new ArrayDeque<>();
+        private final AtomicLong acknowledged = new AtomicLong();
+        private long nextSequence = 1;
+        private long droppedSinceWarning;
+        private long lastWrite;
+        private volatile int waiting;
+        private volatile Socket socket;
+        private Writer writer;
+
+        Peer(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        void add(String content) {
+            if (backlog.size() >= BACKLOG_LIMIT) {
+                backlog.poll();
+                dropped.incrementAndGet();
+                if (droppedSinceWarning++ == 0) {
+                    plugin.getFilteredLogger().warn("Sync peer {} has {} changes waiting, dropping the oldest. "
+                            + "Statuses changed meanwhile may differ on that server", address, BACKLOG_LIMIT);
+                }
+            }
+            long sequence = nextSequence++;
+            String payload = sequence + " " + content;
+            backlog.add(new Entry(sequence, payload + " " + sign(senderMac, payload), System.currentTimeMillis()));
+            waiting = backlog.size();
+        }
+
+        void flush(long now) {
+            trim();
+            // The peer rejects changes it can no longer compare, so they are not sent at all
+            long cutoff = now - SyncManager.VERSION_RETENTION;
+            while (!backlog.isEmpty() && backlog.peek().addedAt < cutoff) {
+                backlog.poll();
+                dropped.incrementAndGet();
+                if (droppedSinceWarning++ == 0) {
+                    plugin.getFilteredLogger().warn("Sync peer {} is unreachable for more than {} hours, dropping its oldest changes. "
+                            + "Statuses changed meanwhile may differ on that server", address, SyncManager.VERSION_RETENTION / 3600000);
+                }
+            }
+            waiting = backlog.size();
+            Entry oldest = backlog.peek();
+            if (socket != null && oldest != null && oldest.writtenAt != 0 && now - oldest.writtenAt > ACK_TIMEOUT) {
+                plugin.getFilteredLogger().warn("Sync peer {} acknowledged nothing for {} seconds, connecting again",
+                        address, ACK_TIMEOUT / 1000);
+                disconnect();
+            }
+            if (backlog.isEmpty()) {
+                if (socket == null || now - lastWrite < HEARTBEAT_INTERVAL) {
+                    return;
+                }
+                add(PING);
+            }
+            try {
+                if (socket == null) {
+                    Socket connection = new Socket();
+                    connection.connect(address, CONNECT_TIMEOUT);
+                    writer = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8));
+                    socket = connection;
+                    startThread("TubsStatusPlugin-SyncAck", () -> ackLoop(this, connection));
+                    plugin.getFilteredLogger().debug("Connected to sync peer {}, sending {} changes", address, backlog.size());
+                }
+                int written = 0;
+                for (Entry entry : backlog) {
+                    if (entry.writtenAt == 0) {
+                        writer.write(entry.line);
+                        writer.write('\n');
+                        entry.writtenAt = now;
+                        written++;
+                    }
+                }
+                if (written > 0) {
+                    writer.flush();
+                    sent.addAndGet(written);
+                    lastWrite = now;
+                }
+            } catch (IOException e) {
+                // The backlog is kept and sent again on the next attempt
+                plugin.getFilteredLogger().debug("Could not send to sync peer {}: {}", address, e.getMessage());
+                disconnect();
+            }
+        }
+
+        /**
+         * Removes the changes the peer acknowledged.
+         */
+        void trim() {
+            long sequence = acknowledged.get();
+            while (!backlog.isEmpty() && backlog.peek().sequence <= sequence) {
+                backlog.poll();
+            }
+            waiting = backlog.size();
+            if (backlog.isEmpty() && droppedSinceWarning > 0) {
+                plugin.getFilteredLogger().warn("Sync peer {} caught up, {} changes were dropped", address, droppedSinceWarning);
+                droppedSinceWarning = 0;
+            }
+        }
+
+        void disconnect() {
+            closeQuietly(socket);
+            socket = null;
+            writer = null;
+            // Everything not acknowledged is written again on the next connection
+            for (Entry entry : backlog) {
+                entry.writtenAt = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package de.tubyoub.statusplugin.sync;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * A status change sent between servers.
+ * The timestamp and the id of the server the change was made on form its version:
+ * the change with the later timestamp wins, equal timestamps are decided by the server id.
+ * <p>
+ * Wire format, one line: {@code <uuid> <timestamp> <base64 origin> <base64 setter> <base64 status>},
+ * with {@code -} as status for a removal.
+ */
+public class StatusDelta {
+    private final UUID uuid;
+    private final String status;
+    private final long timestamp;
+    private final String origin;
+    private final String setter;
+
+    public StatusDelta(UUID uuid, String status, long timestamp, String origin, String setter) {
+        this.uuid = uuid;
+        this.status = status;
+        this.timestamp = timestamp;
+        this.origin = origin;
+        this.setter = setter;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public String getSetter() {
+        return setter;
+    }
+
+    public boolean isRemoval() {
+        return status == null;
+    }
+
+    /**
+     * Returns whether this change wins against another change of the same player.
+     *
+     * @param other The other change.
+     * @return true if this change is newer.
+     */
+    public boolean isNewerThan(StatusDelta other) {
+        if (timestamp != other.timestamp) {
+            return timestamp > other.timestamp;
+        }
+        return origin.compareTo(other.origin) > 0;
+    }
+
+    /**
+     * Encodes the change as a single line without the line break.
+     *
+     * @return The encoded change.
+     */
+    public String encode() {
+        Base64.Encoder encoder = Base64.getEncoder();
+        return uuid + " " + timestamp
+                + " " + encoder.encodeToString(origin.getBytes(StandardCharsets.UTF_8))
+                + " " + encoder.encodeToString(setter.getBytes(StandardCharsets.UTF_8))
+                + " " + (status == null ? "-" : encoder.encodeToString(status.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Decodes a change written by {@link #encode()}.
+     *
+     * @param line The encoded change.
+     * @return The change, or null if the line is damaged.
+     */
+    public static StatusDelta decode(String line) {
+        String[] parts = line.split(" ", -1);
+        if (parts.length != 5) {
+            return null;
+        }
+        try {
+            Base64.Decoder decoder = Base64.getDecoder();
+            String status = "-".equals(parts[4]) ? null : new String(decoder.decode(parts[4]), StandardCharsets.UTF_8);
+            return new StatusDelta(UUID.fromString(parts[0]), status, Long.parseLong(parts[1]),
+                    new String(decoder.decode(parts[2]), StandardCharsets.UTF_8),
+                    new String(decoder.decode(parts[3]), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package de.tubyoub.statusplugin.sync;
+
+import de.tubyoub.statusplugin.Managers.ConfigManager;
+import de.tubyoub.statusplugin.Managers.StatusManager;
+import de.tubyoub.statusplugin.StatusPlugin;
+import de.tubyoub.statusplugin.storage.AtomicFiles;
+import org.bukkit.Bukkit;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the statuses of several servers in sync.
+ * Local changes are published as {@link StatusDelta}s, changes of other servers are applied one by one
+ * on the main thread. Conflicting changes of the same player are resolved by last writer wins,
+ * using the timestamp and the server id as version.
+ * <p>
+ * Versions are kept for {@value #VERSION_RETENTION} ms and saved to sync-versions.log by the background writer,
+ * so they survive a restart. Changes older than that cannot be compared any more and are rejected,
+ * the transports drop them before sending, so a late change never overwrites a newer status.
+ */
+public class SyncManager implements Flushable {
+    // Versions older than this are forgotten, changes older than this are no longer accepted
+    static final long VERSION_RETENTION = 24 * 60 * 60 * 1000L;
+    // How far ahead of the local clock a change may be, later ones would win against every real change
+    private static final long MAX_CLOCK_SKEW = 60 * 1000L;
+
+    private final StatusPlugin plugin;
+    private final StatusManager statusManager;
+    private final SyncTransport transport;
+    private final String serverId;
+    private final File versionsFile;
+    private final Map<UUID, StatusDelta> versions = new ConcurrentHashMap<>();
+    private final AtomicBoolean versionsChanged = new AtomicBoolean();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+
+    /**
+     * Constructor for the SyncManager class.
+     *
+     * @param plugin        The StatusPlugin instance.
+     * @param statusManager The StatusManager incoming changes are applied to.
+     * @param transport     The transport carrying the changes.
+     */
+    public SyncManager(StatusPlugin plugin, StatusManager statusManager, SyncTransport transport) {
+        this.plugin = plugin;
+        this.statusManager = statusManager;
+        this.transport = transport;
+        String configuredId = plugin.getConfigManager().getSyncServerId();
+        this.serverId = configuredId == null || configuredId.isEmpty() ? UUID.randomUUID().toString() : configuredId;
+        this.versionsFile = new File(plugin.getDataFolder(), "sync-versions.log");
+    }
+
+    /**
+     * Creates the sync configured under sync, or null if it is disabled.
+     *
+     * @param plugin        The StatusPlugin instance.
+     * @param statusManager The StatusManager incoming changes are applied to.
+     * @return The started SyncManager, or null.
+     */
+    public static SyncManager create(StatusPlugin plugin, StatusManager statusManager) {
+        ConfigManager configManager = plugin.getConfigManager();
+        if (!configManager.isSyncEnabled()) {
+            return null;
+        }
+        SyncTransport transport;
+        if ("loopback".equalsIgnoreCase(configManager.getSyncTransport())) {
+            transport = new LoopbackSyncTransport("TubsStatusPlugin");
+        } else {
+            transport = new SocketSyncTransport(plugin, configManager.getSyncHost(),
+                    configManager.getSyncPort(), configManager.getSyncPeers(), configManager.getSyncSecret());
+        }
+        SyncManager syncManager = new SyncManager(plugin, statusManager, transport);
+        // Versions have to be known before the first change arrives, the file only holds a day of changes
+        syncManager.loadVersions();
+        statusManager.getStatusWriter().addCompanion(syncManager);
+        try {
+            transport.start(syncManager::receive);
+            plugin.getFilteredLogger().info("Syncing statuses as '{}' over {}", syncManager.serverId, transport.getName());
+            return syncManager;
+        } catch (IOException e) {
+            plugin.getFilteredLogger().error("Could not start status sync over {}: {}", transport.getName(), e.getMessage());
+            transport.close();
+            return null;
+        }
+    }
+
+    /**
+     * Publishes a local status change to the other servers.
+     *
+     * @param uuid   The player's UUID.
+     * @param setter The name of whoever changed the status.
+     * @param status The new status, or null if the status was removed.
+     */
+    public void publish(UUID uuid, String setter, String status) {
+        StatusDelta delta = versions.compute(uuid, (key, previous) -> {
+            long timestamp = System.currentTimeMillis();
+            if (previous != null && previous.getTimestamp() >= timestamp) {
+                // Keep local changes ordered even if the clock went backwards
+                timestamp = previous.getTimestamp() + 1;
+            }
+            return new StatusDelta(key, status, timestamp, serverId, setter);
+        });
+        versionsChanged.set(true);
+        transport.publish(delta);
+        published.incrementAndGet();
+    }
+
+    /**
+     * Drops the versions of changes that are too old to conflict with anything.
+     */
+    public void pruneVersions() {
+        long cutoff = System.currentTimeMillis() - VERSION_RETENTION;
+        if (versions.values().removeIf(delta -> delta.getTimestamp() < cutoff)) {
+            versionsChanged.set(true);
+        }
+    }
+
+    /**
+     * Saves the versions to sync-versions.log if they changed.
+     * Called on the writer thread together with the statuses.
+     *
+     * @throws IOException If the versions could not be written.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (!versionsChanged.getAndSet(false)) {
+            return;
+        }
+        List<StatusDelta> snapshot = new ArrayList<>(versions.values());
+        try {
+            AtomicFiles.write(versionsFile.toPath(), out -> {
+                for (StatusDelta delta : snapshot) {
+                    out.write((delta.encode() + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            });
+        } catch (IOException e) {
+            versionsChanged.set(true);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns sync statistics shown in /tsp info.
+     *
+     * @return The statistics by name.
+     */
+    public Map<String, String> getStatistics() {
+        Map<String, String> statistics = new LinkedHashMap<>();
+        statistics.put("Sync", serverId + " over " + transport.getName());
+        statistics.put("Sync changes", published.get() + " published, " + applied.get() + " applied, "
+                + rejected.get() + " outdated, " + invalid.get() + " invalid");
+        statistics.putAll(transport.getStatistics());
+        return statistics;
+    }
+
+    /**
+     * Stops the transport.
+     */
+    public void close() {
+        transport.close();
+    }
+
+    private void receive(StatusDelta delta) {
+        if (serverId.equals(delta.getOrigin())) {
+            return;
+        }
+        if (delta.getTimestamp() > System.currentTimeMillis() + MAX_CLOCK_SKEW) {
+            invalid.incrementAndGet();
+            plugin.getFilteredLogger().warn("Ignoring status change of {} from {}, it is {} seconds ahead of this server's clock",
+                    delta.getUuid(), delta.getOrigin(), (delta.getTimestamp() - System.currentTimeMillis()) / 1000);
+            return;
+        }
+        if (delta.getTimestamp() < System.currentTimeMillis() - VERSION_RETENTION) {
+            // The version it has to be compared with may already be forgotten
+            rejected.incrementAndGet();
+            plugin.getFilteredLogger().warn("Ignoring status change of {} from {}, it is older than {} hours",
+                    delta.getUuid(), delta.getOrigin(), VERSION_RETENTION / 3600000);
+            return;
+        }
+        String status = delta.getStatus() == null ? null : statusManager.validateStatus(delta.getStatus());
+        if (delta.getStatus() != null && status == null) {
+            invalid.incrementAndGet();
+            plugin.getFilteredLogger().warn("Ignoring status change of {} from {}, the status is longer than {} characters",
+                    delta.getUuid(), delta.getOrigin(), statusManager.getMaxStatusLength());
+            return;
+        }
+        boolean[] accepted = new boolean[1];
+        versions.compute(delta.getUuid(), (key, current) -> {
+            if (current != null && !delta.isNewerThan(current)) {
+                return current;
+            }
+            accepted[0] = true;
+            return delta;
+        });
+        if (accepted[0]) {
+            versionsChanged.set(true);
+        }
+        if (!accepted[0]) {
+            rejected.incrementAndGet();
+            plugin.getFilteredLogger().debug("Ignoring outdated status change of {} from {}", delta.getUuid(), delta.getOrigin());
+            return;
+        }
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            // A newer change may have been accepted while this one waited for the main thread
+            if (versions.get(delta.getUuid()) == delta) {
+                statusManager.applySyncedStatus(delta.getUuid(), status, delta.getSetter() + "@" + delta.getOrigin());
+                applied.incrementAndGet();
+            }
+        });
+    }
+
+    private void loadVersions() {
+        if (!versionsFile.exists()) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - VERSION_RETENTION;
+        try (BufferedReader reader = Files.newBufferedReader(versionsFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                StatusDelta delta = StatusDelta.decode(line);
+                if (delta != null && delta.getTimestamp() >= cutoff) {
+                    versions.merge(delta.getUuid(), delta, (current, loaded) -> loaded.isNewerThan(current) ? loaded : current);
+                }
+            }
+            plugin.getFilteredLogger().debug("Loaded {} sync versions.", versions.size());
+        } catch (IOException e) {
+            plugin.getFilteredLogger().error("Could not load sync-versions.log: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package de.tubyoub.statusplugin.sync;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Message bus that carries status changes between servers.
+ * Implementations deliver every published change to the other servers, never back to the sender.
+ */
+public interface SyncTransport {
+
+    /**
+     * Returns the name shown in /tsp info.
+     *
+     * @return The transport name.
+     */
+    String getName();
+
+    /**
+     * Starts receiving changes of other servers.
+     * The receiver may be called from any thread.
+     *
+     * @param receiver The consumer of incoming changes.
+     * @throws IOException If the transport could not be started.
+     */
+    void start(Consumer<StatusDelta> receiver) throws IOException;
+
+    /**
+     * Sends a change to the other servers without blocking the caller.
+     *
+     * @param delta The change to send.
+     */
+    void publish(StatusDelta delta);
+
+    /**
+     * Returns transport specific statistics shown in /tsp info.
+     *
+     * @return The statistics by name, empty by default.
+     */
+    default Map<String, String> getStatistics() {
+        return Map.of();
+    }
+
+    /**
+     * Stops the transport.
+     */
+    void close();
+}
@@ -0,0 +1,145 @@
+package de.tubyoub.statusplugin.transfer;
+
+import de.tubyoub.statusplugin.model.StatusChange;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Comma separated values with a {@code uuid,status} header.
+ * Fields follow RFC 4180, so quoted statuses may contain commas, quotes and line breaks.
+ * An empty status removes the player's status.
+ * Fields and records are limited in length, so a quote that is never closed ends the import
+ * with the line it was opened on instead of reading the rest of the file into one field.
+ */
+public class CsvFormat implements TransferFormat {
+    // Far above any status, a longer field is a quote that was not closed
+    private static final int MAX_FIELD_LENGTH = 16 * 1024;
+    private static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+    @Override
+    public String getName() {
+        return "CSV";
+    }
+
+    @Override
+    public RecordReader reader(BufferedReader in) {
+        return new RecordReader() {
+            private long lineNumber;
+            private int uuidColumn = -1;
+            private int statusColumn = -1;
+
+            @Override
+            public StatusChange next() throws IOException {
+                if (uuidColumn < 0) {
+                    readHeader();
+                }
+                List<String> fields;
+                long recordLine;
+                do {
+                    recordLine = lineNumber + 1;
+                    fields = readRecord();
+                    if (fields == null) {
+                        return null;
+                    }
+                } while (fields.size() == 1 && fields.get(0).isEmpty());
+                if (fields.size() <= Math.max(uuidColumn, statusColumn)) {
+                    throw new MalformedRecordException(recordLine, "expected " + (Math.max(uuidColumn, statusColumn) + 1) + " fields");
+                }
+                String status = fields.get(statusColumn);
+                return new StatusChange(TransferFormat.parseUuid(recordLine, fields.get(uuidColumn)), status.isEmpty() ? null : status);
+            }
+
+            private void readHeader() throws IOException {
+                List<String> header = readRecord();
+                if (header != null) {
+                    for (int i = 0; i < header.size(); i++) {
+                        String name = header.get(i).trim().replace("\uFEFF", "");
+                        if (name.equalsIgnoreCase("uuid")) {
+                            uuidColumn = i;
+                        } else if (name.equalsIgnoreCase("status")) {
+                            statusColumn = i;
+                        }
+                    }
+                }
+                if (uuidColumn < 0 || statusColumn < 0) {
+                    throw new IOException("The first line must name the columns uuid and status");
+                }
+            }
+
+            private List<String> readRecord() throws IOException {
+                int c = in.read();
+                if (c < 0) {
+                    return null;
+                }
+                lineNumber++;
+                long recordLine = lineNumber;
+                List<String> fields = new ArrayList<>(2);
+                StringBuilder field = new StringBuilder();
+                boolean quoted = false;
+                int recordLength = 0;
+                while (c >= 0) {
+                    if (++recordLength > MAX_RECORD_LENGTH || field.length() >= MAX_FIELD_LENGTH) {
+                        // Not a MalformedRecordException, the reader cannot find the start of the next record
+                        throw new IOException("line " + recordLine + ": "
+                                + (recordLength > MAX_RECORD_LENGTH ? "record longer than " + MAX_RECORD_LENGTH
+                                : "field longer than " + MAX_FIELD_LENGTH) + " characters"
+                                + (quoted ? ", is a quote not closed?" : ""));
+                    }
+                    if (quoted) {
+                        if (c == '"') {
+                            in.mark(1);
+                            int next = in.read();
+                            if (next == '"') {
+                                field.append('"');
+                            } else {
+                                quoted = false;
+                                in.reset();
+                            }
+                        } else {
+                            if (c == '\n') {
+                                lineNumber++;
+                            }
+                            field.append((char) c);
+                        }
+                    } else if (c == '"' && field.length() == 0) {
+                        quoted = true;
+                    } else if (c == ',') {
+                        fields.add(field.toString());
+                        field.setLength(0);
+                    } else if (c == '\n') {
+                        break;
+                    } else if (c != '\r') {
+                        field.append((char) c);
+                    }
+                    c = in.read();
+                }
+                fields.add(field.toString());
+                return fields;
+            }
+        };
+    }
+
+    @Override
+    public void writeHeader(Writer out) throws IOException {
+        out.write("uuid,status\n");
+    }
+
+    @Override
+    public void write(Writer out, UUID uuid, String status) throws IOException {
+        out.write(uuid.toString());
+        out.write(',');
+        if (status.indexOf(',') < 0 && status.indexOf('"') < 0 && status.indexOf('\n') < 0 && status.indexOf('\r') < 0) {
+            out.write(status);
+        } else {
+            out.write('"');
+            out.write(status.replace("\"", "\"\""));
+            out.write('"');
+        }
+        out.write('\n');
+    }
+}
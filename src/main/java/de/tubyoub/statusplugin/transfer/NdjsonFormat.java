@@ -0,0 +1,87 @@
+package de.tubyoub.statusplugin.transfer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import de.tubyoub.statusplugin.model.StatusChange;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.UUID;
+
+/**
+ * Newline delimited JSON, one {@code {"uuid": "...", "status": "..."}} object per line.
+ * Unknown fields are ignored, a missing or null status removes the player's status.
+ */
+public class NdjsonFormat implements TransferFormat {
+    private static final JsonFactory JSON = new JsonFactory();
+
+    @Override
+    public String getName() {
+        return "NDJSON";
+    }
+
+    @Override
+    public RecordReader reader(BufferedReader in) {
+        return new RecordReader() {
+            private long lineNumber;
+
+            @Override
+            public StatusChange next() throws IOException {
+                String line;
+                do {
+                    line = in.readLine();
+                    if (line == null) {
+                        return null;
+                    }
+                    lineNumber++;
+                } while (line.trim().isEmpty());
+                try {
+                    return parse(line, lineNumber);
+                } catch (JsonProcessingException e) {
+                    throw new MalformedRecordException(lineNumber, e.getOriginalMessage());
+                }
+            }
+        };
+    }
+
+    @Override
+    public void write(Writer out, UUID uuid, String status) throws IOException {
+        JsonGenerator generator = JSON.createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartObject();
+        generator.writeStringField("uuid", uuid.toString());
+        generator.writeStringField("status", status);
+        generator.writeEndObject();
+        generator.flush();
+        out.write('\n');
+    }
+
+    private static StatusChange parse(String line, long lineNumber) throws IOException {
+        try (JsonParser parser = JSON.createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new MalformedRecordException(lineNumber, "expected a JSON object");
+            }
+            String uuid = null;
+            String status = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("uuid".equals(field) && value == JsonToken.VALUE_STRING) {
+                    uuid = parser.getText();
+                } else if ("status".equals(field) && value == JsonToken.VALUE_STRING) {
+                    status = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (uuid == null) {
+                throw new MalformedRecordException(lineNumber, "missing uuid");
+            }
+            return new StatusChange(TransferFormat.parseUuid(lineNumber, uuid), status);
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package de.tubyoub.statusplugin.transfer;
+
+import de.tubyoub.statusplugin.Managers.StatusManager;
+import de.tubyoub.statusplugin.StatusPlugin;
+import de.tubyoub.statusplugin.model.StatusChange;
+import de.tubyoub.statusplugin.storage.AtomicFiles;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk import and export of statuses for /tsp import and /tsp export.
+ * Files are streamed on background threads. Imported records are handed to the main thread in chunks
+ * and applied with a fixed budget per tick, so even a file with millions of records never stalls the server.
+ * Only one transfer runs at a time.
+ */
+public class StatusTransfer {
+    private static final int CHUNK_SIZE = 1000;
+    // Chunks read ahead of the main thread, bounds the memory of an import
+    private static final int QUEUED_CHUNKS = 16;
+    private static final long PROGRESS_INTERVAL = 5000L;
+    private static final int REPORTED_ERRORS = 5;
+
+    private final StatusPlugin plugin;
+    private final StatusManager statusManager;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Import currentImport;
+
+    /**
+     * Constructor for the StatusTransfer class.
+     *
+     * @param plugin        The StatusPlugin instance.
+     * @param statusManager The StatusManager imported statuses are applied to.
+     */
+    public StatusTransfer(StatusPlugin plugin, StatusManager statusManager) {
+        this.plugin = plugin;
+        this.statusManager = statusManager;
+    }
+
+    /**
+     * Returns whether an import or export is running.
+     *
+     * @return true if a transfer is running.
+     */
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Writes all stored statuses to a file in the plugin folder in the background.
+     *
+     * @param sender   The sender that gets told the result.
+     * @param fileName The file name, ending in .csv, .ndjson, .jsonl or .json.
+     */
+    public void exportStatuses(CommandSender sender, String fileName) {
+        File file = resolve(sender, fileName);
+        TransferFormat format = file != null ? formatOf(sender, file) : null;
+        if (format == null || !start(sender)) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        statusManager.getStatusWriter().submit(store -> {
+            long[] count = new long[1];
+            AtomicFiles.write(file.toPath(), out -> {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                format.writeHeader(writer);
+                try {
+                    store.forEach((uuid, status) -> {
+                        try {
+                            format.write(writer, uuid, status);
+                            count[0]++;
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                writer.flush();
+            });
+            return count[0];
+        }).whenComplete((count, error) -> Bukkit.getScheduler().runTask(plugin, () -> {
+            running.set(false);
+            if (error != null) {
+                sender.sendMessage(plugin.getPluginPrefix() + ChatColor.RED + " Export failed: " + error.getMessage());
+                plugin.getFilteredLogger().error("Could not export statuses to {}: {}", file.getName(), error.getMessage());
+            } else {
+                sender.sendMessage(plugin.getPluginPrefix() + ChatColor.GREEN + " Exported " + count + " statuses to "
+                        + file.getName() + " in " + (System.currentTimeMillis() - started) + " ms.");
+                plugin.getFilteredLogger().info("{} exported {} statuses to {} as {}", sender.getName(), count, file.getName(), format.getName());
+            }
+        }));
+    }
+
+    /**
+     * Imports statuses from a file in the plugin folder.
+     * The file is read in the background and validated with the rules of /tsp setstatus.
+     *
+     * @param sender   The sender that gets told the progress.
+     * @param fileName The file name, ending in .csv, .ndjson, .jsonl or .json.
+     * @param replace  true to remove all statuses first, false to merge the file into the current statuses.
+     */
+    public void importStatuses(CommandSender sender, String fileName, boolean replace) {
+        File file = resolve(sender, fileName);
+        TransferFormat format = file != null ? formatOf(sender, file) : null;
+        if (format == null) {
+            return;
+        }
+        if (!file.isFile()) {
+            sender.sendMessage(plugin.getPluginPrefix() + ChatColor.RED + " File not found: " + fileName);
+            return;
+        }
+        if (!start(sender)) {
+            return;
+        }
+        Import job = new Import(sender, file, format, replace);
+        currentImport = job;
+        job.applier = Bukkit.getScheduler().runTaskTimer(plugin, job::applyTick, 1L, 1L);
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, job::read);
+        sender.sendMessage(plugin.getPluginPrefix() + ChatColor.YELLOW + " Importing " + file.getName()
+                + (replace ? ", replacing all statuses..." : "..."));
+        plugin.getFilteredLogger().info("{} started importing {} ({})", sender.getName(), file.getName(), replace ? "replace" : "merge");
+    }
+
+    /**
+     * Stops a running import, called when the plugin is disabled.
+     * Records that were already applied are kept.
+     */
+    public void cancel() {
+        Import job = currentImport;
+        if (job != null) {
+            job.cancelled = true;
+            job.applier.cancel();
+            plugin.getFilteredLogger().warn("Import of {} was stopped after {} records.", job.file.getName(), job.applied);
+            currentImport = null;
+            running.set(false);
+        }
+    }
+
+    private boolean start(CommandSender sender) {
+        if (!running.compareAndSet(false, true)) {
+            sender.sendMessage(plugin.getPluginPrefix() + ChatColor.RED + " Another import or export is still running.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Resolves a file name inside the plugin folder.
+     *
+     * @param sender   The sender that gets told if the name is not allowed.
+     * @param fileName The file name.
+     * @return The file, or null if it lies outside the plugin folder.
+     */
+    private File resolve(CommandSender sender, String fileName) {
+        try {
+            File dataFolder = plugin.getDataFolder().getCanonicalFile();
+            File file = new File(dataFolder, fileName).getCanonicalFile();
+            if (file.toPath().startsWith(dataFolder.toPath()) && !file.equals(dataFolder)) {
+                return file;
+            }
+        } catch (IOException e) {
+            plugin.getFilteredLogger().debug("Could not resolve transfer file {}: {}", fileName, e.getMessage());
+        }
+        sender.sendMessage(plugin.getPluginPrefix() + ChatColor.RED + " The file must be inside the plugin folder.");
+        return null;
+    }
+
+    private TransferFormat formatOf(CommandSender sender, File file) {
+        TransferFormat format = TransferFormat.forFile(file.getName());
+        if (format == null) {
+            sender.sendMessage(plugin.getPluginPrefix() + ChatColor.RED + " Unknown file type, use .csv, .ndjson or .jsonl.");
+        }
+        return format;
+    }
+
+    /**
+     * A running import. The file is read on an async thread and applied by a task on the main thread.
+     */
+    private final class Import {
+        private final CommandSender sender;
+        private final File file;
+        private final TransferFormat format;
+        private final boolean replace;
+        private final long started = System.currentTimeMillis();
+        private final BlockingQueue<List<StatusChange>> chunks = new ArrayBlockingQueue<>(QUEUED_CHUNKS);
+        private final AtomicLong bytesRead = new AtomicLong();
+        private final AtomicLong malformed = new AtomicLong();
+        private final List<String> errors = new ArrayList<>();
+        private final int recordsPerTick = Math.max(1, plugin.getConfigManager().getTransferRecordsPerTick());
+        private volatile boolean cancelled;
+        private volatile boolean readDone;
+        private volatile boolean resetPending;
+        private volatile String failure;
+        private BukkitTask applier;
+
+        // Only used by the main thread
+        private List<StatusChange> current;
+        private int index;
+        private long applied;
+        private long rejected;
+        private long lastProgress = System.currentTimeMillis();
+
+        Import(CommandSender sender, File file, TransferFormat format, boolean replace) {
+            this.sender = sender;
+            this.file = file;
+            this.format = format;
+            this.replace = replace;
+        }
+
+        /**
+         * Reads the file, runs on an async thread.
+         */
+        void read() {
+            try {
+                if (replace) {
+                    // Nothing is removed unless the whole file can be read
+                    long records = stream(false);
+                    if (malformed.get() > 0) {
+                        failure = malformed.get() + " of " + (records + malformed.get())
+                                + " records are malformed, no statuses were replaced. Fix the file or import it with merge.";
+                        return;
+                    }
+                    statusManager.getStatusWriter().submit(store -> {
+                        store.clear();
+                        return null;
+                    }).get();
+                    resetPending = true;
+                    bytesRead.set(0);
+                }
+                stream(true);
+            } catch (Exception e) {
+                failure = e.getMessage() != null ? e.getMessage() : e.toString();
+            } finally {
+                readDone = true;
+            }
+        }
+
+        /**
+         * Reads every record of the file.
+         *
+         * @param queue true to hand the records to the main thread, false to only check them.
+         * @return The number of valid records.
+         */
+        private long stream(boolean queue) throws IOException, InterruptedException {
+            long records = 0;
+            try (InputStream in = new CountingInputStream(new FileInputStream(file), bytesRead);
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                TransferFormat.RecordReader recordReader = format.reader(reader);
+                List<StatusChange> chunk = new ArrayList<>(CHUNK_SIZE);
+                while (!cancelled) {
+                    StatusChange change;
+                    try {
+                        change = recordReader.next();
+                    } catch (TransferFormat.MalformedRecordException e) {
+                        malformed.incrementAndGet();
+                        addError(e.getMessage());
+                        continue;
+                    }
+                    if (change == null) {
+                        break;
+                    }
+                    records++;
+                    if (queue) {
+                        chunk.add(change);
+                        if (chunk.size() == CHUNK_SIZE) {
+                            enqueue(chunk);
+                            chunk = new ArrayList<>(CHUNK_SIZE);
+                        }
+                    }
+                }
+                if (queue && !chunk.isEmpty()) {
+                    enqueue(chunk);
+                }
+            }
+            return records;
+        }
+
+        private void enqueue(List<StatusChange> chunk) throws InterruptedException {
+            // Waits while the main thread is behind
+            while (!cancelled && !chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                // retry until there is room or the import is stopped
+            }
+        }
+
+        /**
+         * Applies the next records, runs on the main thread every tick.
+         */
+        void applyTick() {
+            // Read before polling, so a chunk queued after this check is not mistaken for the end
+            boolean done = readDone;
+            for (int budget = recordsPerTick; budget > 0; budget--) {
+                if (current == null) {
+                    current = chunks.poll();
+                    index = 0;
+                    if (current == null) {
+                        break;
+                    }
+                    // Checked after polling, the flag is set before the first chunk is queued
+                    resetIfPending();
+                }
+                apply(current.get(index++));
+                if (index == current.size()) {
+                    current = null;
+                }
+            }
+            if (done && current == null && chunks.isEmpty()) {
+                resetIfPending();
+                finish();
+            } else if (System.currentTimeMillis() - lastProgress >= PROGRESS_INTERVAL) {
+                lastProgress = System.currentTimeMillis();
+                long total = file.length();
+                long percent = total > 0 ? Math.min(100, bytesRead.get() * 100 / total) : 100;
+                sender.sendMessage(plugin.getPluginPrefix() + ChatColor.YELLOW + " Importing " + file.getName() + ": "
+                        + (replace && applied == 0 && !done ? "checking file" : percent + "% read, " + applied + " statuses applied"));
+            }
+        }
+
+        private void resetIfPending() {
+            if (resetPending) {
+                resetPending = false;
+                statusManager.resetStatuses();
+            }
+        }
+
+        private void apply(StatusChange change) {
+            String status = change.getStatus();
+            if (status != null) {
+                status = statusManager.validateStatus(status);
+                if (status == null) {
+                    rejected++;
+                    addError(change.getUuid() + ": status is longer than " + statusManager.getMaxStatusLength() + " characters");
+                    return;
+                }
+            }
+            statusManager.importStatus(change.getUuid(), status, sender.getName());
+            applied++;
+        }
+
+        private void finish() {
+            applier.cancel();
+            currentImport = null;
+            running.set(false);
+            long seconds = (System.currentTimeMillis() - started) / 1000;
+            if (failure != null) {
+                sender.sendMessage(plugin.getPluginPrefix() + ChatColor.RED + " Import of " + file.getName() + " failed: " + failure);
+                plugin.getFilteredLogger().error("Import of {} failed after {} records: {}", file.getName(), applied, failure);
+            } else {
+                sender.sendMessage(plugin.getPluginPrefix() + ChatColor.GREEN + " Imported " + applied + " statuses from "
+                        + file.getName() + " in " + seconds + " s" + (replace ? ", replacing all statuses." : "."));
+                plugin.getFilteredLogger().info("{} imported {} statuses from {} as {} in {} s, {} rejected, {} malformed",
+                        sender.getName(), applied, file.getName(), format.getName(), seconds, rejected, malformed.get());
+            }
+            if (rejected > 0 || malformed.get() > 0) {
+                sender.sendMessage(plugin.getPluginPrefix() + ChatColor.RED + " Skipped " + rejected + " statuses that are too long and "
+                        + malformed.get() + " malformed records:");
+                synchronized (errors) {
+                    for (String error : errors) {
+                        sender.sendMessage(ChatColor.GRAY + "- " + error);
+                    }
+                }
+            }
+        }
+
+        private void addError(String error) {
+            plugin.getFilteredLogger().debug("Import of {}: {}", file.getName(), error);
+            synchronized (errors) {
+                if (errors.size() < REPORTED_ERRORS) {
+                    errors.add(error);
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes read from a stream, used to show the import progress.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private final AtomicLong count;
+
+        CountingInputStream(InputStream in, AtomicLong count) {
+            super(in);
+            this.count = count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count.addAndGet(n);
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package de.tubyoub.statusplugin.transfer;
+
+import de.tubyoub.statusplugin.model.StatusChange;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * File format used by /tsp export and /tsp import.
+ * Records are read and written one at a time, so files of any size can be streamed.
+ */
+public interface TransferFormat {
+
+    /**
+     * Reads records one at a time.
+     */
+    interface RecordReader {
+        /**
+         * Reads the next record.
+         *
+         * @return The record, or null at the end of the file.
+         * @throws MalformedRecordException If the record is damaged, reading can continue with the next one.
+         * @throws IOException              If the file could not be read.
+         */
+        StatusChange next() throws IOException;
+    }
+
+    /**
+     * Thrown for a record that cannot be parsed, the reader stays usable.
+     */
+    class MalformedRecordException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public MalformedRecordException(long line, String message) {
+            super("line " + line + ": " + message);
+        }
+    }
+
+    /**
+     * Returns the name of the format.
+     *
+     * @return The format name.
+     */
+    String getName();
+
+    /**
+     * Starts reading records.
+     *
+     * @param in The file content.
+     * @return The reader of the records.
+     * @throws IOException If the file could not be read.
+     */
+    RecordReader reader(BufferedReader in) throws IOException;
+
+    /**
+     * Writes what comes before the first record.
+     *
+     * @param out The file content.
+     * @throws IOException If the file could not be written.
+     */
+    default void writeHeader(Writer out) throws IOException {
+    }
+
+    /**
+     * Writes one record.
+     *
+     * @param out    The file content.
+     * @param uuid   The player's UUID.
+     * @param status The player's status.
+     * @throws IOException If the file could not be written.
+     */
+    void write(Writer out, UUID uuid, String status) throws IOException;
+
+    /**
+     * Picks the format by file extension, .csv for CSV and .ndjson, .jsonl or .json for NDJSON.
+     *
+     * @param fileName The file name.
+     * @return The format, or null if the extension is unknown.
+     */
+    static TransferFormat forFile(String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            return new CsvFormat();
+        }
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json")) {
+            return new NdjsonFormat();
+        }
+        return null;
+    }
+
+    /**
+     * Parses a UUID of a record.
+     *
+     * @param line  The line of the record.
+     * @param value The UUID as text.
+     * @return The UUID.
+     * @throws MalformedRecordException If the text is no UUID.
+     */
+    static UUID parseUuid(long line, String value) throws MalformedRecordException {
+        try {
+            return UUID.fromString(value.trim());
+        } catch (IllegalArgumentException e) {
+            throw new MalformedRecordException(line, "invalid uuid '" + value + "'");
+        }
+    }
+}
@@ -2,6 +2,8 @@ package de.tubyoub.utils;
 
 import org.bukkit.ChatColor;
 
+import java.util.Arrays;
+
 /**
  * Enum representing different color codes in Minecraft.
  * Each enum value represents a different color, with a corresponding input string and Minecraft color string.
@@ -30,6 +32,32 @@ public enum ColourUtils {
     ITALIC("&o", ChatColor.ITALIC.toString()),
     RESET("&r", ChatColor.RESET.toString());
 
+    /**
+     * Permission bits for {@link #translate(String, int)}.
+     */
+    public static final int ALLOW_COLOR = 1;
+    public static final int ALLOW_BOLD = 1 << 1;
+    public static final int ALLOW_MAGIC = 1 << 2;
+    public static final int ALLOW_UNDERLINE = 1 << 3;
+    public static final int ALLOW_STRIKETHROUGH = 1 << 4;
+    public static final int ALLOW_ITALIC = 1 << 5;
+    public static final int ALLOW_ALL = ALLOW_COLOR | ALLOW_BOLD | ALLOW_MAGIC | ALLOW_UNDERLINE | ALLOW_STRIKETHROUGH | ALLOW_ITALIC;
+
+    // Permission bits each code needs, -1 for characters that are no code. Formats need colour as well.
+    private static final int[] REQUIRED = new int[128];
+
+    static {
+        Arrays.fill(REQUIRED, -1);
+        for (char c : "0123456789abcdefr".toCharArray()) {
+            REQUIRED[c] = ALLOW_COLOR;
+        }
+        REQUIRED['k'] = ALLOW_COLOR | ALLOW_MAGIC;
+        REQUIRED['l'] = ALLOW_COLOR | ALLOW_BOLD;
+        REQUIRED['m'] = ALLOW_COLOR | ALLOW_STRIKETHROUGH;
+        REQUIRED['n'] = ALLOW_COLOR | ALLOW_UNDERLINE;
+        REQUIRED['o'] = ALLOW_COLOR | ALLOW_ITALIC;
+    }
+
     private final String input;
     private final String MinecraftColor;
 
@@ -61,14 +89,65 @@ public enum ColourUtils {
 
     /**
      * Static method to format a message string, replacing input color strings with the corresponding Minecraft color strings.
+     * Translates all {@code &x} codes in a single pass and returns the message itself if it contains no {@code &}.
      * @param message The message string to format.
      * @return The formatted message string.
      */
     public static String format(String message) {
-        String msg = message;
-        for (ColourUtils c : values()) {
-            msg = msg.replace(c.getInput(), c.getMinecraftColor());
+        int first = message.indexOf('&');
+        if (first < 0) {
+            return message;
+        }
+        char[] chars = message.toCharArray();
+        for (int i = first; i < chars.length - 1; i++) {
+            if (chars[i] == '&' && chars[i + 1] < 128 && REQUIRED[chars[i + 1]] >= 0) {
+                chars[i] = ChatColor.COLOR_CHAR;
+                i++;
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Returns the permission bits a code needs.
+     * @param code The lower case character after the {@code &}.
+     * @return The permission bits, or -1 if the character is no code.
+     */
+    public static int getRequiredPermissions(char code) {
+        return code < 128 ? REQUIRED[code] : -1;
+    }
+
+    /**
+     * Translates the {@code &x} codes of a message in a single pass, dropping the codes that are not allowed.
+     * Codes are matched case-insensitively, formatting codes also need the colour permission.
+     * @param message The message string to translate.
+     * @param allowed The permission bits, see {@link #ALLOW_COLOR} to {@link #ALLOW_ITALIC}.
+     * @return The translated message string, the message itself if it contains no {@code &}.
+     */
+    public static String translate(String message, int allowed) {
+        int first = message.indexOf('&');
+        if (first < 0) {
+            return message;
+        }
+        // Codes are replaced or dropped, never grown, so the result fits into the same buffer
+        char[] chars = message.toCharArray();
+        int length = first;
+        for (int i = first; i < chars.length; i++) {
+            char c = chars[i];
+            if (c == '&' && i + 1 < chars.length) {
+                char code = Character.toLowerCase(chars[i + 1]);
+                int required = getRequiredPermissions(code);
+                if (required >= 0) {
+                    if ((allowed & required) == required) {
+                        chars[length++] = ChatColor.COLOR_CHAR;
+                        chars[length++] = code;
+                    }
+                    i++;
+                    continue;
+                }
+            }
+            chars[length++] = c;
         }
-        return msg;
+        return new String(chars, 0, length);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,247 @@
+package de.tubyoub.utils;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.Style;
+import net.kyori.adventure.text.format.TextDecoration;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import net.kyori.adventure.text.minimessage.tag.standard.StandardTags;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders text with hex colours ({@code &#RRGGBB}) and MiniMessage tags such as gradients into legacy text.
+ * Parsing MiniMessage is expensive, so each distinct text is compiled once into a component that is kept
+ * in a bounded cache. Permissions are applied to the compiled component, so one template serves every player.
+ * Legacy {@code &} codes keep working, they are turned into the matching tags before parsing.
+ */
+public final class MiniMessageTemplates {
+    private static final int MAX_TEMPLATES = 1024;
+    private static final String[] LEGACY_TAGS = new String[128];
+
+    // Only tags that can be shown as legacy text, hover and click events would be lost anyway
+    private static final MiniMessage MINI_MESSAGE = MiniMessage.builder()
+            .tags(TagResolver.resolver(StandardTags.color(), StandardTags.decorations(), StandardTags.gradient(),
+                    StandardTags.rainbow(), StandardTags.transition(), StandardTags.pride(), StandardTags.reset()))
+            .strict(false)
+            .build();
+    private static final LegacyComponentSerializer SERIALIZER = supportsHexColors()
+            ? LegacyComponentSerializer.builder().hexColors().useUnusualXRepeatedCharacterHexFormat().build()
+            : LegacyComponentSerializer.legacySection();
+
+    private static final Map<String, Component> TEMPLATES = new LinkedHashMap<String, Component>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Component> eldest) {
+            return size() > MAX_TEMPLATES;
+        }
+    };
+    private static long hits;
+    private static long misses;
+
+    static {
+        String[] colours = {"black", "dark_blue", "dark_green", "dark_aqua", "dark_red", "dark_purple", "gold", "gray",
+                "dark_gray", "blue", "green", "aqua", "red", "light_purple", "yellow", "white"};
+        for (int i = 0; i < colours.length; i++) {
+            // A legacy colour code also ends all formatting before it
+            LEGACY_TAGS["0123456789abcdef".charAt(i)] = "<reset><" + colours[i] + ">";
+        }
+        LEGACY_TAGS['k'] = "<obfuscated>";
+        LEGACY_TAGS['l'] = "<bold>";
+        LEGACY_TAGS['m'] = "<strikethrough>";
+        LEGACY_TAGS['n'] = "<underlined>";
+        LEGACY_TAGS['o'] = "<italic>";
+        LEGACY_TAGS['r'] = "<reset>";
+    }
+
+    private MiniMessageTemplates() {
+    }
+
+    /**
+     * Tells whether a text needs MiniMessage, because it has a hex colour or something that looks like a tag.
+     *
+     * @param text The text with {@code &} codes.
+     * @return true if the text has to be rendered by {@link #render(String, int)}.
+     */
+    public static boolean isRich(String text) {
+        if (text.contains("&#")) {
+            return true;
+        }
+        int open = text.indexOf('<');
+        return open >= 0 && text.indexOf('>', open) > open;
+    }
+
+    /**
+     * Tells whether the text from the given index on starts with a MiniMessage tag like {@code <bold>},
+     * {@code </red>} or {@code <gradient:#ff0000:gold>}.
+     *
+     * @param text  The text.
+     * @param start The index of the {@code <}.
+     * @return The index of the closing {@code >}, or -1 if there is no tag.
+     */
+    public static int findTagEnd(String text, int start) {
+        int i = start + 1;
+        if (i < text.length() && (text.charAt(i) == '/' || text.charAt(i) == '!')) {
+            i++;
+        }
+        if (i >= text.length() || !(Character.isLetter(text.charAt(i)) || text.charAt(i) == '#')) {
+            return -1;
+        }
+        for (; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '>') {
+                return i;
+            }
+            if (!(Character.isLetterOrDigit(c) || c == '_' || c == ':' || c == '#' || c == '-' || c == '.')) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Renders a text into legacy text with section sign codes, leaving out what is not allowed.
+     * Hex colours are shown as the nearest named colour on servers older than 1.16.
+     *
+     * @param text    The text with {@code &} codes, hex colours and MiniMessage tags.
+     * @param allowed The permission bits, see {@link ColourUtils#ALLOW_COLOR}.
+     * @return The legacy text.
+     */
+    public static String render(String text, int allowed) {
+        try {
+            return SERIALIZER.serialize(applyPermissions(compile(text), allowed));
+        } catch (RuntimeException e) {
+            // MiniMessage rejects some input, show it like before MiniMessage was supported
+            return ColourUtils.translate(text, allowed);
+        }
+    }
+
+    /**
+     * Returns the compiled template of a text, parsing it only if it is not cached.
+     *
+     * @param text The text with {@code &} codes, hex colours and MiniMessage tags.
+     * @return The parsed text with all tags applied.
+     */
+    public static Component compile(String text) {
+        synchronized (TEMPLATES) {
+            Component template = TEMPLATES.get(text);
+            if (template != null) {
+                hits++;
+                return template;
+            }
+            misses++;
+        }
+        Component template = MINI_MESSAGE.deserialize(toMiniMessage(text));
+        synchronized (TEMPLATES) {
+            TEMPLATES.put(text, template);
+        }
+        return template;
+    }
+
+    /**
+     * Returns template cache statistics shown in /tsp info.
+     *
+     * @return The number of templates, hits and misses.
+     */
+    public static String getStatistics() {
+        synchronized (TEMPLATES) {
+            return TEMPLATES.size() + " templates, " + hits + " hits, " + misses + " misses";
+        }
+    }
+
+    /**
+     * Turns legacy codes, hex colours and {@code &_} into their MiniMessage form.
+     */
+    private static String toMiniMessage(String text) {
+        StringBuilder builder = new StringBuilder(text.length() + 16);
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '&' && i + 1 < length) {
+                char code = Character.toLowerCase(text.charAt(i + 1));
+                if (code == '#' && isHexColour(text, i + 2)) {
+                    builder.append("<reset><#").append(text, i + 2, i + 8).append('>');
+                    i += 7;
+                    continue;
+                }
+                if (code == '_') {
+                    builder.append(' ');
+                    i++;
+                    continue;
+                }
+                if (code < 128 && LEGACY_TAGS[code] != null) {
+                    builder.append(LEGACY_TAGS[code]);
+                    i++;
+                    continue;
+                }
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Tells whether six hex digits start at the given index.
+     *
+     * @param text  The text.
+     * @param start The index of the first digit.
+     * @return true if there is a hex colour.
+     */
+    public static boolean isHexColour(String text, int start) {
+        if (start + 6 > text.length()) {
+            return false;
+        }
+        for (int i = start; i < start + 6; i++) {
+            if (Character.digit(text.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the colours and decorations of a compiled template that are not allowed.
+     */
+    private static Component applyPermissions(Component component, int allowed) {
+        if ((allowed & ColourUtils.ALLOW_ALL) == ColourUtils.ALLOW_ALL) {
+            return component;
+        }
+        Style.Builder style = component.style().toBuilder();
+        if ((allowed & ColourUtils.ALLOW_COLOR) == 0) {
+            // Formatting needs the colour permission as well, like with legacy codes
+            style.color(null);
+            allowed = 0;
+        }
+        removeDecoration(style, allowed, ColourUtils.ALLOW_BOLD, TextDecoration.BOLD);
+        removeDecoration(style, allowed, ColourUtils.ALLOW_MAGIC, TextDecoration.OBFUSCATED);
+        removeDecoration(style, allowed, ColourUtils.ALLOW_UNDERLINE, TextDecoration.UNDERLINED);
+        removeDecoration(style, allowed, ColourUtils.ALLOW_STRIKETHROUGH, TextDecoration.STRIKETHROUGH);
+        removeDecoration(style, allowed, ColourUtils.ALLOW_ITALIC, TextDecoration.ITALIC);
+        List<Component> children = new ArrayList<>(component.children().size());
+        for (Component child : component.children()) {
+            children.add(applyPermissions(child, allowed));
+        }
+        return component.style(style.build()).children(children);
+    }
+
+    private static void removeDecoration(Style.Builder style, int allowed, int permission, TextDecoration decoration) {
+        if ((allowed & permission) == 0) {
+            style.decoration(decoration, TextDecoration.State.NOT_SET);
+        }
+    }
+
+    /**
+     * Tells whether the server can show hex colours, which came with Minecraft 1.16.
+     */
+    private static boolean supportsHexColors() {
+        try {
+            Class.forName("net.md_5.bungee.api.ChatColor").getMethod("of", String.class);
+            return true;
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            return false;
+        }
+    }
+}